@@ -0,0 +1,270 @@
+package com.tsymbalt.peopledb.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Reads @SQL, @MultiSQL and @Id at compile time and generates, for every repository, a
+ * {@code <Repository>_SqlRegistry} holding its statements per CrudOperation and, for every entity, an
+ * {@code <Entity>_IdAccessor} that reads and writes its id without reflective scans. Both are registered
+ * as services so that CRUDRepository can find them with ServiceLoader.
+ * <p>
+ * The annotations are referenced by name only, so this module doesn't depend on the main source set.
+ */
+@SupportedAnnotationTypes({RepositoryProcessor.SQL, RepositoryProcessor.MULTI_SQL, RepositoryProcessor.ID})
+public class RepositoryProcessor extends AbstractProcessor {
+    static final String SQL = "com.tsymbalt.peopledb.annotation.SQL";
+    static final String MULTI_SQL = "com.tsymbalt.peopledb.annotation.MultiSQL";
+    static final String ID = "com.tsymbalt.peopledb.annotation.Id";
+
+    private static final String SQL_REGISTRY = "com.tsymbalt.peopledb.repository.SqlRegistry";
+    private static final String ID_ACCESSOR = "com.tsymbalt.peopledb.repository.IdAccessor";
+    private static final String CRUD_OPERATION = "com.tsymbalt.peopledb.model.CrudOperation";
+
+    private final Set<String> sqlRegistries = new TreeSet<>();
+    private final Set<String> idAccessors = new TreeSet<>();
+    private final Set<String> processedTypes = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile(SQL_REGISTRY, sqlRegistries);
+            writeServiceFile(ID_ACCESSOR, idAccessors);
+            return false;
+        }
+        Set<TypeElement> repositories = new LinkedHashSet<>();
+        Set<TypeElement> entities = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if ((name.equals(SQL) || name.equals(MULTI_SQL)) && element.getKind() == ElementKind.METHOD) {
+                    repositories.add((TypeElement) element.getEnclosingElement());
+                } else if (name.equals(ID) && element.getKind() == ElementKind.FIELD) {
+                    entities.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement repository : repositories) {
+            if (processedTypes.add("sql:" + repository.getQualifiedName())) generateSqlRegistry(repository);
+        }
+        for (TypeElement entity : entities) {
+            if (processedTypes.add("id:" + entity.getQualifiedName())) generateIdAccessor(entity);
+        }
+        return false;
+    }
+
+    private void generateSqlRegistry(TypeElement repository) {
+        // same precedence as the reflective lookup: @MultiSQL containers first, then single @SQL annotations
+        Map<String, String> statements = new LinkedHashMap<>();
+        List<AnnotationMirror> single = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(repository.getEnclosedElements())) {
+            for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+                String type = qualifiedName(mirror);
+                if (type.equals(MULTI_SQL)) {
+                    for (Object sql : (List<?>) value(mirror, "value")) {
+                        addStatement(statements, (AnnotationMirror) ((AnnotationValue) sql).getValue());
+                    }
+                } else if (type.equals(SQL)) {
+                    single.add(mirror);
+                }
+            }
+        }
+        single.forEach(mirror -> addStatement(statements, mirror));
+
+        String packageName = packageOf(repository);
+        String repositoryName = repository.getSimpleName().toString();
+        String className = repositoryName + "_SqlRegistry";
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(packageName).append(";\n\n")
+                .append("import ").append(CRUD_OPERATION).append(";\n\n")
+                .append("import java.util.EnumMap;\n")
+                .append("import java.util.Map;\n\n")
+                .append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(className).append(" implements ").append(SQL_REGISTRY).append(" {\n")
+                .append("    @Override\n")
+                .append("    public Class<?> repositoryType() {\n")
+                .append("        return ").append(repositoryName).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Map<CrudOperation, String> statements() {\n")
+                .append("        Map<CrudOperation, String> statements = new EnumMap<>(CrudOperation.class);\n");
+        statements.forEach((operation, sql) -> src.append("        statements.put(CrudOperation.").append(operation)
+                .append(", ").append(javaString(sql)).append(");\n"));
+        src.append("        return statements;\n")
+                .append("    }\n")
+                .append("}\n");
+        writeSource(packageName + "." + className, src.toString(), repository);
+        sqlRegistries.add(packageName + "." + className);
+    }
+
+    private void addStatement(Map<String, String> statements, AnnotationMirror sql) {
+        String operation = ((VariableElement) value(sql, "operationType")).getSimpleName().toString();
+        statements.putIfAbsent(operation, (String) value(sql, "value"));
+    }
+
+    private void generateIdAccessor(TypeElement entity) {
+        VariableElement idField = ElementFilter.fieldsIn(entity.getEnclosedElements()).stream()
+                .filter(f -> f.getAnnotationMirrors().stream().anyMatch(m -> qualifiedName(m).equals(ID)))
+                .findFirst().orElseThrow();
+        if (idField.asType().getKind() != TypeKind.DECLARED || !idField.asType().toString().equals("java.lang.Long")) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@Id field must be a java.lang.Long", idField);
+            return;
+        }
+        String field = idField.getSimpleName().toString();
+        String idColumn = idField.getAnnotationMirrors().stream()
+                .filter(m -> qualifiedName(m).equals(ID))
+                .map(m -> (String) value(m, "column"))
+                .findFirst().orElseThrow();
+        String capitalized = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+        boolean fieldAccessible = !idField.getModifiers().contains(Modifier.PRIVATE);
+        String getter = findAccessor(entity, List.of("get" + capitalized, field), 0);
+        String setter = idField.getModifiers().contains(Modifier.FINAL) ? null : findAccessor(entity, List.of("set" + capitalized), 1);
+        boolean fieldWritable = fieldAccessible && !idField.getModifiers().contains(Modifier.FINAL);
+        boolean needsHandle = setter == null && !fieldWritable;
+
+        String packageName = packageOf(entity);
+        String entityName = entity.getSimpleName().toString();
+        String className = entityName + "_IdAccessor";
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(packageName).append(";\n\n");
+        if (needsHandle) {
+            src.append("import java.lang.invoke.MethodHandle;\n")
+                    .append("import java.lang.invoke.MethodHandles;\n")
+                    .append("import java.lang.reflect.Field;\n\n");
+        }
+        src.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(className).append(" implements ").append(ID_ACCESSOR)
+                .append("<").append(entityName).append("> {\n");
+        if (needsHandle) {
+            // no setter to call (e.g. a final field), so resolve the field by name once; there is no scan
+            src.append("    private static final MethodHandle ID_SETTER;\n\n")
+                    .append("    static {\n")
+                    .append("        try {\n")
+                    .append("            Field field = ").append(entityName).append(".class.getDeclaredField(\"").append(field).append("\");\n")
+                    .append("            field.setAccessible(true);\n")
+                    .append("            ID_SETTER = MethodHandles.lookup().unreflectSetter(field);\n")
+                    .append("        } catch (ReflectiveOperationException e) {\n")
+                    .append("            throw new ExceptionInInitializerError(e);\n")
+                    .append("        }\n")
+                    .append("    }\n\n");
+        }
+        src.append("    @Override\n")
+                .append("    public Class<").append(entityName).append("> entityType() {\n")
+                .append("        return ").append(entityName).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Long getId(").append(entityName).append(" entity) {\n");
+        if (getter != null) {
+            src.append("        return entity.").append(getter).append("();\n");
+        } else if (fieldAccessible) {
+            src.append("        return entity.").append(field).append(";\n");
+        } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "@Id field is private and has no get" + capitalized + "() or " + field + "() accessor", idField);
+            return;
+        }
+        src.append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void setId(").append(entityName).append(" entity, Long id) {\n");
+        if (setter != null) {
+            src.append("        entity.").append(setter).append("(id);\n");
+        } else if (!needsHandle) {
+            src.append("        entity.").append(field).append(" = id;\n");
+        } else {
+            src.append("        try {\n")
+                    .append("            ID_SETTER.invoke(entity, id);\n")
+                    .append("        } catch (Throwable e) {\n")
+                    .append("            throw new com.tsymbalt.peopledb.exception.DataException(\"Unable to set Id field value of \" + entity, e);\n")
+                    .append("        }\n");
+        }
+        src.append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String idColumn() {\n")
+                .append("        return ").append(javaString(idColumn)).append(";\n")
+                .append("    }\n")
+                .append("}\n");
+        writeSource(packageName + "." + className, src.toString(), entity);
+        idAccessors.add(packageName + "." + className);
+    }
+
+    /**
+     * @return the name of a non-private, non-static method with one of the given names and parameter count
+     */
+    private String findAccessor(TypeElement entity, List<String> names, int parameterCount) {
+        return ElementFilter.methodsIn(entity.getEnclosedElements()).stream()
+                .filter(m -> names.contains(m.getSimpleName().toString()))
+                .filter(m -> m.getParameters().size() == parameterCount)
+                .filter(m -> !m.getModifiers().contains(Modifier.PRIVATE) && !m.getModifiers().contains(Modifier.STATIC))
+                .map(m -> m.getSimpleName().toString())
+                .findFirst().orElse(null);
+    }
+
+    private Object value(AnnotationMirror mirror, String name) {
+        return processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet().stream()
+                .filter(e -> e.getKey().getSimpleName().contentEquals(name))
+                .map(e -> e.getValue().getValue())
+                .findFirst().orElseThrow();
+    }
+
+    private static String qualifiedName(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private String packageOf(TypeElement type) {
+        return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    }
+
+    private void writeSource(String qualifiedName, String source, Element origin) {
+        try (Writer out = processingEnv.getFiler().createSourceFile(qualifiedName, origin).openWriter()) {
+            out.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + qualifiedName + ": " + e, origin);
+        }
+    }
+
+    private void writeServiceFile(String service, Set<String> providers) {
+        if (providers.isEmpty()) return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + service);
+            try (Writer out = file.openWriter()) {
+                for (String provider : providers) {
+                    out.write(provider);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write service file for " + service + ": " + e);
+        }
+    }
+
+    private static String javaString(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.tsymbalt.peopledb.benchmark;
+
+import com.tsymbalt.peopledb.datasource.PooledDataSource;
+import com.tsymbalt.peopledb.model.Address;
+import com.tsymbalt.peopledb.model.Person;
+import com.tsymbalt.peopledb.model.Region;
+import com.tsymbalt.peopledb.repository.FetchPlan;
+import com.tsymbalt.peopledb.repository.PeopleRepository;
+import com.tsymbalt.peopledb.schema.SchemaManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+/**
+ * A fresh in-memory H2 database per trial, holding {@code tableSize} people, each with a home and business
+ * address when {@code withAddresses} is set. The repository is pooled so benchmarks can run with any number
+ * of JMH threads ({@code -PjmhThreads=N}).
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    @Param({"1000", "100000"})
+    public int tableSize;
+
+    @Param({"false", "true"})
+    public boolean withAddresses;
+
+    PooledDataSource dataSource;
+    PeopleRepository repository;
+    PeopleRepository repositoryWithoutAddresses;
+    long minId;
+    long maxId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 16);
+        try (Connection c = dataSource.getConnection()) {
+            new SchemaManager(c).migrate();
+        }
+        repository = new PeopleRepository(dataSource);
+        repositoryWithoutAddresses = new PeopleRepository(dataSource);
+        repositoryWithoutAddresses.setAddressFetchPlan(FetchPlan.NONE);
+        List<Long> ids = repository.saveAll(LongStream.range(0, tableSize).mapToObj(this::newPerson).toList())
+                .stream().map(Person::getId).toList();
+        minId = ids.get(0);
+        maxId = ids.get(ids.size() - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        repository.close();
+        repositoryWithoutAddresses.close();
+        try (Connection c = dataSource.getConnection(); Statement stmt = c.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        dataSource.close();
+    }
+
+    Person newPerson(long n) {
+        Person person = new Person("First" + n, "Last" + n, ZonedDateTime.of(1980, 1, 1, 0, 0, 0, 0, ZoneId.of("+0")).plusDays(n % 10_000));
+        person.setSalary(BigDecimal.valueOf(40_000 + n % 60_000));
+        person.setEmail("person" + n + "@example.com");
+        if (withAddresses) {
+            person.setHomeAddress(newAddress(n % 1_000, "Home"));
+            person.setBusinessAddress(newAddress(n % 100, "Business"));
+        }
+        return person;
+    }
+
+    private Address newAddress(long n, String kind) {
+        Region region = Region.values()[(int) (n % Region.values().length)];
+        return new Address(null, n + " " + kind + " St.", null, "City" + n % 50, "ST", String.valueOf(10_000 + n),
+                "United States", "County" + n % 20, region);
+    }
+
+    long randomId() {
+        return ThreadLocalRandom.current().nextLong(minId, maxId + 1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.tsymbalt.peopledb.benchmark;
+
+import com.tsymbalt.peopledb.model.Person;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Hot paths of PeopleRepository. Run with {@code ./gradlew jmh}; the GC profiler adds allocation rates
+ * (gc.alloc.rate.norm is bytes per operation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PeopleRepositoryBenchmark {
+    private static final int DELETE_MANY_SIZE = 100;
+
+    @Benchmark
+    public Person save(BenchmarkDatabase db) {
+        return db.repository.save(db.newPerson(db.randomId()));
+    }
+
+    @Benchmark
+    public Optional<Person> findById(BenchmarkDatabase db) {
+        return db.repository.findById(db.randomId());
+    }
+
+    @Benchmark
+    public Optional<Person> findByIdWithoutAddresses(BenchmarkDatabase db) {
+        return db.repositoryWithoutAddresses.findById(db.randomId());
+    }
+
+    @Benchmark
+    public List<Person> findAll(BenchmarkDatabase db) {
+        return db.repository.findAll();
+    }
+
+    @Benchmark
+    public long count(BenchmarkDatabase db) {
+        return db.repository.count();
+    }
+
+    @Benchmark
+    public Person update(BenchmarkDatabase db) {
+        Person person = db.repository.findById(db.randomId()).orElseThrow();
+        person.setSalary(person.getSalary().add(BigDecimal.ONE));
+        db.repository.update(person);
+        return person;
+    }
+
+    /**
+     * Includes the insert of the row it deletes, so compare against {@link #save}.
+     */
+    @Benchmark
+    public Person saveThenDelete(BenchmarkDatabase db) {
+        Person person = db.repository.save(db.newPerson(db.randomId()));
+        db.repository.delete(person);
+        return person;
+    }
+
+    /**
+     * Includes the batched insert of the {@value #DELETE_MANY_SIZE} rows it deletes.
+     */
+    @Benchmark
+    public long saveAllThenDeleteMany(BenchmarkDatabase db) {
+        List<Long> ids = db.repository.saveAll(LongStream.range(0, DELETE_MANY_SIZE).mapToObj(db::newPerson).toList())
+                .stream().map(Person::getId).toList();
+        return db.repository.deleteAllById(ids);
+    }
+}
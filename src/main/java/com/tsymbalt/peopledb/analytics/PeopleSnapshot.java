@@ -0,0 +1,260 @@
+package com.tsymbalt.peopledb.analytics;
+
+import com.tsymbalt.peopledb.model.Region;
+import com.tsymbalt.peopledb.repository.PeopleRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.stream.Stream;
+
+/**
+ * Column-oriented copy of PEOPLE held off-heap in direct buffers, for repeated whole-population scans
+ * without building Person objects or querying the database: ids and salaries (in cents) as longs, date of
+ * birth as epoch days, home region as a byte, and first and last names as dictionary codes.
+ * <p>
+ * Filters such as {@link #salaryBetween} return a {@link Selection}; aggregates such as {@link #sumSalaryCents}
+ * take one. Each is a single branch-free pass over a primitive column, which the JIT can unroll and vectorize.
+ * <p>
+ * {@link #refresh()} appends the rows whose id is above the highest one loaded so far; changes to rows already
+ * loaded are not picked up. A snapshot is not thread safe: don't scan while refreshing.
+ */
+public class PeopleSnapshot {
+    public static final long NULL_SALARY = Long.MIN_VALUE;
+    public static final int NULL_DOB = Integer.MIN_VALUE;
+    public static final byte NULL_REGION = -1;
+    private static final Region[] REGIONS = Region.values();
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private record Row(long id, String firstName, String lastName, ZonedDateTime dob, BigDecimal salary, Region homeRegion) {
+    }
+
+    private final PeopleRepository repository;
+    private final StringDictionary firstNames = new StringDictionary();
+    private final StringDictionary lastNames = new StringDictionary();
+    private ByteBuffer ids;
+    private ByteBuffer salaryCents;
+    private ByteBuffer dobEpochDays;
+    private ByteBuffer firstNameCodes;
+    private ByteBuffer lastNameCodes;
+    private ByteBuffer homeRegions;
+    private int size;
+    private long lastId = Long.MIN_VALUE;
+
+    private PeopleSnapshot(PeopleRepository repository) {
+        this.repository = repository;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Streams every person once, in id order, into a new snapshot.
+     */
+    public static PeopleSnapshot load(PeopleRepository repository) {
+        PeopleSnapshot snapshot = new PeopleSnapshot(repository);
+        snapshot.refresh();
+        return snapshot;
+    }
+
+    /**
+     * Appends the people saved since the last load or refresh.
+     * @return how many rows were added
+     */
+    public int refresh() {
+        int before = size;
+        try (Stream<Row> rows = repository.streamAll(Row.class, size == 0 ? null : lastId)) {
+            rows.forEach(this::append);
+        }
+        return size - before;
+    }
+
+    private void append(Row row) {
+        if (size == capacity()) allocate(capacity() * 2);
+        ids.putLong(size * Long.BYTES, row.id());
+        salaryCents.putLong(size * Long.BYTES, row.salary() == null ? NULL_SALARY
+                : row.salary().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact());
+        dobEpochDays.putInt(size * Integer.BYTES, row.dob() == null ? NULL_DOB : (int) row.dob().toLocalDate().toEpochDay());
+        firstNameCodes.putInt(size * Integer.BYTES, firstNames.encode(row.firstName()));
+        lastNameCodes.putInt(size * Integer.BYTES, lastNames.encode(row.lastName()));
+        homeRegions.put(size, row.homeRegion() == null ? NULL_REGION : (byte) row.homeRegion().ordinal());
+        lastId = row.id();
+        size++;
+    }
+
+    private int capacity() {
+        return ids.capacity() / Long.BYTES;
+    }
+
+    private void allocate(int capacity) {
+        ids = grow(ids, capacity * Long.BYTES);
+        salaryCents = grow(salaryCents, capacity * Long.BYTES);
+        dobEpochDays = grow(dobEpochDays, capacity * Integer.BYTES);
+        firstNameCodes = grow(firstNameCodes, capacity * Integer.BYTES);
+        lastNameCodes = grow(lastNameCodes, capacity * Integer.BYTES);
+        homeRegions = grow(homeRegions, capacity);
+    }
+
+    private static ByteBuffer grow(ByteBuffer old, int bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        if (old != null) buffer.put(0, old, 0, old.capacity());
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long idAt(int row) {
+        return ids.getLong(row * Long.BYTES);
+    }
+
+    public String lastNameAt(int row) {
+        return lastNames.decode(lastNameCodes.getInt(row * Integer.BYTES));
+    }
+
+    public String firstNameAt(int row) {
+        return firstNames.decode(firstNameCodes.getInt(row * Integer.BYTES));
+    }
+
+    public Selection all() {
+        return Selection.all(size);
+    }
+
+    // ---- filters ----
+
+    /**
+     * @return rows with a salary in [min, max] cents
+     */
+    public Selection salaryBetween(long minCents, long maxCents) {
+        Selection selection = new Selection(size);
+        for (int row = 0; row < size; row++) {
+            long cents = salaryCents.getLong(row * Long.BYTES);
+            long hit = (cents >= minCents & cents <= maxCents & cents != NULL_SALARY) ? 1L : 0L;
+            selection.words[row >>> 6] |= hit << row;
+        }
+        return selection;
+    }
+
+    /**
+     * @return rows born in [from, to]
+     */
+    public Selection bornBetween(LocalDate from, LocalDate to) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        Selection selection = new Selection(size);
+        for (int row = 0; row < size; row++) {
+            int day = dobEpochDays.getInt(row * Integer.BYTES);
+            long hit = (day >= fromDay & day <= toDay & day != NULL_DOB) ? 1L : 0L;
+            selection.words[row >>> 6] |= hit << row;
+        }
+        return selection;
+    }
+
+    public Selection homeRegionIs(Region region) {
+        byte code = region == null ? NULL_REGION : (byte) region.ordinal();
+        Selection selection = new Selection(size);
+        for (int row = 0; row < size; row++) {
+            long hit = homeRegions.get(row) == code ? 1L : 0L;
+            selection.words[row >>> 6] |= hit << row;
+        }
+        return selection;
+    }
+
+    public Selection lastNameIs(String lastName) {
+        return codeEquals(lastNameCodes, lastNames.codeOf(lastName), lastName == null);
+    }
+
+    public Selection firstNameIs(String firstName) {
+        return codeEquals(firstNameCodes, firstNames.codeOf(firstName), firstName == null);
+    }
+
+    private Selection codeEquals(ByteBuffer codes, int code, boolean matchNull) {
+        Selection selection = new Selection(size);
+        // a name that never occurred has no code, and must not match the nulls
+        if (code == StringDictionary.NULL_CODE && !matchNull) return selection;
+        for (int row = 0; row < size; row++) {
+            long hit = codes.getInt(row * Integer.BYTES) == code ? 1L : 0L;
+            selection.words[row >>> 6] |= hit << row;
+        }
+        return selection;
+    }
+
+    // ---- aggregates ----
+
+    public long sumSalaryCents(Selection selection) {
+        selection.requireSize(size);
+        long sum = 0;
+        for (int row = 0; row < size; row++) {
+            long cents = salaryCents.getLong(row * Long.BYTES);
+            boolean counted = selection.contains(row) & cents != NULL_SALARY;
+            sum += counted ? cents : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the average salary in cents of the selected rows that have one, or NaN if none do
+     */
+    public double averageSalaryCents(Selection selection) {
+        selection.requireSize(size);
+        long sum = 0;
+        long count = 0;
+        for (int row = 0; row < size; row++) {
+            long cents = salaryCents.getLong(row * Long.BYTES);
+            boolean counted = selection.contains(row) & cents != NULL_SALARY;
+            sum += counted ? cents : 0;
+            count += counted ? 1 : 0;
+        }
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * @return counts of selected rows per salary bucket; bucket i holds salaries in
+     * [i * bucketCents, (i + 1) * bucketCents), and the last bucket also holds everything above
+     */
+    public long[] salaryHistogram(Selection selection, long bucketCents, int buckets) {
+        selection.requireSize(size);
+        long[] histogram = new long[buckets];
+        for (int row = 0; row < size; row++) {
+            long cents = salaryCents.getLong(row * Long.BYTES);
+            if (!selection.contains(row) || cents == NULL_SALARY) continue;
+            histogram[(int) Math.min(Math.max(cents, 0) / bucketCents, buckets - 1)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return counts of selected rows by age in whole years on {@code asOf}, in buckets of {@code bucketYears};
+     * the last bucket also holds everyone older
+     */
+    public long[] ageHistogram(Selection selection, LocalDate asOf, int bucketYears, int buckets) {
+        selection.requireSize(size);
+        long[] histogram = new long[buckets];
+        int asOfDay = (int) asOf.toEpochDay();
+        for (int row = 0; row < size; row++) {
+            int day = dobEpochDays.getInt(row * Integer.BYTES);
+            if (!selection.contains(row) || day == NULL_DOB) continue;
+            // 365.2425 days per year is exact enough for bucketing and avoids calendar math per row
+            int age = (int) ((asOfDay - day) / 365.2425);
+            histogram[Math.min(Math.max(age, 0) / bucketYears, buckets - 1)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return counts of selected rows per home region, indexed by {@link Region#ordinal()}, plus a last entry
+     * for people without a home address
+     */
+    public long[] countByHomeRegion(Selection selection) {
+        selection.requireSize(size);
+        long[] counts = new long[REGIONS.length + 1];
+        for (int row = 0; row < size; row++) {
+            byte code = homeRegions.get(row);
+            int bucket = code == NULL_REGION ? REGIONS.length : code;
+            counts[bucket] += selection.contains(row) ? 1 : 0;
+        }
+        return counts;
+    }
+}
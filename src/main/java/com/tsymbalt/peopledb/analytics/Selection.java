@@ -0,0 +1,57 @@
+package com.tsymbalt.peopledb.analytics;
+
+import java.util.Arrays;
+
+/**
+ * A set of row positions in a {@link PeopleSnapshot}, one bit per row, produced by its filter operators
+ * and combined with {@link #and}/{@link #or} before being passed to an aggregate. A selection is only valid
+ * for the snapshot size it was made at; after {@link PeopleSnapshot#refresh()} adds rows, select again.
+ */
+public final class Selection {
+    final long[] words;
+    final int size;
+
+    Selection(int size) {
+        this.words = new long[(size + 63) >>> 6];
+        this.size = size;
+    }
+
+    static Selection all(int size) {
+        Selection selection = new Selection(size);
+        Arrays.fill(selection.words, -1L);
+        int tail = size & 63;
+        if (tail != 0) selection.words[selection.words.length - 1] = (1L << tail) - 1;
+        return selection;
+    }
+
+    boolean contains(int row) {
+        return (words[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public Selection and(Selection other) {
+        requireSize(other.size);
+        Selection result = new Selection(size);
+        for (int i = 0; i < words.length; i++) result.words[i] = words[i] & other.words[i];
+        return result;
+    }
+
+    public Selection or(Selection other) {
+        requireSize(other.size);
+        Selection result = new Selection(size);
+        for (int i = 0; i < words.length; i++) result.words[i] = words[i] | other.words[i];
+        return result;
+    }
+
+    void requireSize(int expected) {
+        if (size != expected) {
+            throw new IllegalArgumentException("Selection covers " + size + " rows, expected " + expected
+                    + "; select again after a refresh");
+        }
+    }
+
+    public int count() {
+        int count = 0;
+        for (long word : words) count += Long.bitCount(word);
+        return count;
+    }
+}
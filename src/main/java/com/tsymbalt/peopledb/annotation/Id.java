@@ -5,4 +5,8 @@ import java.lang.annotation.RetentionPolicy;
 
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Id {
+    /**
+     * @return the column the id is stored in
+     */
+    String column() default "ID";
 }
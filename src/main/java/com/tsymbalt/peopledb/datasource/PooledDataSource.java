@@ -0,0 +1,263 @@
+package com.tsymbalt.peopledb.datasource;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A small, fixed-size connection pool over a JDBC URL (normally H2).
+ * <p>
+ * {@link #getConnection()} hands out a pooled connection; calling {@code close()} on it returns it to the pool.
+ * Borrowing is re-entrant per thread: while a thread holds a connection, further {@code getConnection()} calls
+ * from that thread return the same connection, so nested repository calls (e.g. saving a person's addresses
+ * while saving the person) share one connection and one transaction. The connection goes back to the pool
+ * when the outermost borrower closes it. A connection closed by another thread is still returned, and the
+ * borrowing thread gets a fresh one on its next call.
+ * <p>
+ * Pooled connections keep their identity across borrows, so callers can attach per-connection state
+ * (such as prepared statements) to them, and release it when a {@link #addDiscardListener discard listener}
+ * reports that the connection has been physically closed.
+ */
+public class PooledDataSource implements javax.sql.DataSource, AutoCloseable {
+    public static final Duration DEFAULT_BORROW_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Queue<PooledConnection> idle = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<PooledConnection> borrowed = new ThreadLocal<>();
+    private final List<Consumer<Connection>> discardListeners = new CopyOnWriteArrayList<>();
+    private volatile Duration borrowTimeout = DEFAULT_BORROW_TIMEOUT;
+    private volatile boolean closed;
+
+    public PooledDataSource(String url, int maxSize) {
+        this(url, null, null, maxSize);
+    }
+
+    public PooledDataSource(String url, String user, String password, int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return how many connections are currently borrowed
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public Duration getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(Duration borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        PooledConnection current = borrowed.get();
+        if (current != null && current.owner == Thread.currentThread()) {
+            current.holdCount++;
+            return current.proxy;
+        }
+        if (current != null) {
+            // returned to the pool by another thread; it may already be someone else's
+            borrowed.remove();
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No connection available within " + borrowTimeout + " (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection pooled = takeIdleOrOpen();
+            pooled.owner = Thread.currentThread();
+            pooled.holdCount = 1;
+            borrowed.set(pooled);
+            return pooled.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleOrOpen() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            if (pooled.physical.isValid(0)) return pooled;
+            discard(pooled, null);
+        }
+        Connection physical = user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pooled) throws SQLException {
+        if (--pooled.holdCount > 0) return;
+        if (pooled.owner == Thread.currentThread()) borrowed.remove();
+        pooled.owner = null;
+        try {
+            if (!pooled.physical.getAutoCommit()) {
+                // never hand an open transaction to the next borrower
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (closed) {
+                discard(pooled, null);
+            } else {
+                idle.offer(pooled);
+            }
+        } catch (SQLException e) {
+            discard(pooled, e);
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes the idle connections. Borrowed connections are closed as they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled, null);
+        }
+    }
+
+    /**
+     * @param listener called with the pooled connection (as handed out by {@link #getConnection()}) after it has
+     *                 been physically closed and will not be handed out again
+     */
+    public void addDiscardListener(Consumer<Connection> listener) {
+        discardListeners.add(listener);
+    }
+
+    public void removeDiscardListener(Consumer<Connection> listener) {
+        discardListeners.remove(listener);
+    }
+
+    /**
+     * Closes the physical connection and tells the discard listeners.
+     * @param failure the exception being thrown by the caller, which a failure to close is added to; may be null
+     */
+    private void discard(PooledConnection pooled, SQLException failure) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            if (failure != null) failure.addSuppressed(e);
+        }
+        for (Consumer<Connection> listener : discardListeners) {
+            listener.accept(pooled.proxy);
+        }
+    }
+
+    private final class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private final Connection proxy;
+        private volatile Thread owner;
+        private volatile int holdCount;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (holdCount > 0) release(this);
+                    return null;
+                case "isClosed":
+                    return holdCount == 0 || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + physical + "]";
+                default:
+                    if (holdCount == 0) throw new SQLException("Connection has been returned to the pool");
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all use the pool's credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
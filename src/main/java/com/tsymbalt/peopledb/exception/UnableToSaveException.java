@@ -4,4 +4,7 @@ public class UnableToSaveException extends RuntimeException {
     public UnableToSaveException(String message) {
         super(message);
     }
+    public UnableToSaveException(String message, Throwable e) {
+        super(message, e);
+    }
 }
@@ -0,0 +1,102 @@
+package com.tsymbalt.peopledb.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Encodes text as UTF-8 straight into a direct buffer, draining it to a file channel whenever it fills up.
+ * One writer is kept per worker thread and pointed at a new channel for each range, so the buffer is reused.
+ */
+final class ChannelWriter {
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+    private FileChannel channel;
+    private long bytesWritten;
+
+    ChannelWriter(int bufferSize) {
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void open(FileChannel channel) {
+        this.channel = channel;
+        this.bytesWritten = 0;
+        buffer.clear();
+    }
+
+    /**
+     * Drains the buffer and returns the number of bytes written to the current channel.
+     */
+    long close() throws IOException {
+        flush();
+        channel = null;
+        return bytesWritten;
+    }
+
+    void write(char ascii) throws IOException {
+        ensure(1);
+        buffer.put((byte) ascii);
+    }
+
+    void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(digits.length);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    /**
+     * Writes the non-ASCII character at {@code i}, together with its low surrogate if it starts a pair.
+     * @return the index of the last character consumed
+     */
+    int writeNonAscii(String s, int i) throws IOException {
+        char c = s.charAt(i);
+        ensure(4);
+        if (c < 0x800) {
+            buffer.put((byte) (0xC0 | c >> 6));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            buffer.put((byte) (0xF0 | cp >> 18));
+            buffer.put((byte) (0x80 | cp >> 12 & 0x3F));
+            buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | cp & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | c >> 12));
+            buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+            buffer.put((byte) (0x80 | c & 0x3F));
+        }
+        return i;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
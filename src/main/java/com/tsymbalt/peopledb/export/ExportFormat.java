@@ -0,0 +1,160 @@
+package com.tsymbalt.peopledb.export;
+
+import java.io.IOException;
+
+/**
+ * How {@link PeopleExporter} lays out rows. Fields are written one at a time, in column order, so no row is
+ * ever built up as a string.
+ */
+public enum ExportFormat {
+    /**
+     * RFC 4180 CSV with a header line; nulls are empty fields.
+     */
+    CSV("csv") {
+        @Override
+        void writeHeader(ChannelWriter out, String[] names) throws IOException {
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) out.write(',');
+                out.writeAscii(names[i]);
+            }
+            out.write('\n');
+        }
+
+        @Override
+        void startRow(ChannelWriter out) {
+        }
+
+        @Override
+        void startField(ChannelWriter out, int index, String name) throws IOException {
+            if (index > 0) out.write(',');
+        }
+
+        @Override
+        void writeNull(ChannelWriter out) {
+        }
+
+        @Override
+        void writeString(ChannelWriter out, String value) throws IOException {
+            if (!needsQuotes(value)) {
+                writeChars(out, value, false);
+                return;
+            }
+            out.write('"');
+            writeChars(out, value, true);
+            out.write('"');
+        }
+
+        @Override
+        void endRow(ChannelWriter out) throws IOException {
+            out.write('\n');
+        }
+
+        private boolean needsQuotes(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+            }
+            return false;
+        }
+
+        private void writeChars(ChannelWriter out, String value, boolean quoted) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    i = out.writeNonAscii(value, i);
+                } else {
+                    if (quoted && c == '"') out.write('"');
+                    out.write(c);
+                }
+            }
+        }
+    },
+
+    /**
+     * One JSON object per line, keyed by column name; nulls are written as {@code null}.
+     */
+    JSONL("jsonl") {
+        @Override
+        void writeHeader(ChannelWriter out, String[] names) {
+        }
+
+        @Override
+        void startRow(ChannelWriter out) throws IOException {
+            out.write('{');
+        }
+
+        @Override
+        void startField(ChannelWriter out, int index, String name) throws IOException {
+            if (index > 0) out.write(',');
+            out.write('"');
+            out.writeAscii(name);
+            out.writeAscii("\":");
+        }
+
+        @Override
+        void writeNull(ChannelWriter out) throws IOException {
+            out.writeAscii("null");
+        }
+
+        @Override
+        void writeString(ChannelWriter out, String value) throws IOException {
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    i = out.writeNonAscii(value, i);
+                } else if (c == '"' || c == '\\') {
+                    out.write('\\');
+                    out.write(c);
+                } else if (c < 0x20) {
+                    out.writeAscii("\\u00");
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+                } else {
+                    out.write(c);
+                }
+            }
+            out.write('"');
+        }
+
+        @Override
+        void endRow(ChannelWriter out) throws IOException {
+            out.writeAscii("}\n");
+        }
+    };
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    abstract void writeHeader(ChannelWriter out, String[] names) throws IOException;
+
+    abstract void startRow(ChannelWriter out) throws IOException;
+
+    abstract void startField(ChannelWriter out, int index, String name) throws IOException;
+
+    abstract void writeNull(ChannelWriter out) throws IOException;
+
+    abstract void writeString(ChannelWriter out, String value) throws IOException;
+
+    abstract void endRow(ChannelWriter out) throws IOException;
+
+    /**
+     * Numbers are written bare in every format.
+     */
+    void writeNumber(ChannelWriter out, long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    void writeNumber(ChannelWriter out, String digits) throws IOException {
+        out.writeAscii(digits);
+    }
+}
@@ -0,0 +1,30 @@
+package com.tsymbalt.peopledb.export;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of a running (or finished) export.
+ * @param rows rows written so far
+ * @param bytes bytes written so far, not counting the header
+ * @param rangesDone id ranges finished so far
+ * @param ranges id ranges in the whole export
+ * @param elapsed time since the export started
+ */
+public record ExportProgress(long rows, long bytes, int rangesDone, int ranges, Duration elapsed) {
+
+    public double rowsPerSecond() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? 0 : rows * 1000.0 / millis;
+    }
+
+    public double bytesPerSecond() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? 0 : bytes * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d rows (%,d bytes) from %d/%d ranges in %s, %,.0f rows/sec, %,.1f MB/sec",
+                rows, bytes, rangesDone, ranges, elapsed, rowsPerSecond(), bytesPerSecond() / (1024 * 1024));
+    }
+}
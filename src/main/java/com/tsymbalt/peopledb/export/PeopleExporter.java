@@ -0,0 +1,310 @@
+package com.tsymbalt.peopledb.export;
+
+import com.tsymbalt.peopledb.exception.DataException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Dumps the whole PEOPLE table to a CSV or JSON Lines file.
+ * <p>
+ * The id space between MIN(ID) and MAX(ID) is split in a fork-join pool into ranges of at most {@code rangeSize}
+ * ids. Each range is read on its own connection and encoded into a per-thread direct buffer, which is drained
+ * into a part file through a {@link FileChannel}. Once every range is done the part files are appended to the
+ * target in id order with {@link FileChannel#transferTo}, so the output is sorted by id however the ranges were
+ * scheduled. The target is written under a temporary name and moved into place at the end, so readers never
+ * see a partial dump. Up to {@code parallelism} connections are open at once.
+ */
+public class PeopleExporter {
+    public static final int DEFAULT_RANGE_SIZE = 50_000;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    public static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private static final String MIN_MAX_SQL = "SELECT MIN(ID), MAX(ID) FROM PEOPLE";
+    private static final String SELECT_RANGE_SQL = """
+            SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, HOME_ADDRESS, BIZ_ADDRESS
+            FROM PEOPLE WHERE ID BETWEEN ? AND ? ORDER BY ID""";
+    private static final String[] FIELDS = {
+            "id", "firstName", "lastName", "dob", "salary", "email", "homeAddressId", "businessAddressId"};
+
+    private record Part(Path file, long rows, long bytes) {
+    }
+
+    /**
+     * Indexes of the exported columns, resolved once per range query.
+     */
+    private record Columns(int id, int firstName, int lastName, int dob, int salary, int email,
+                           int homeAddress, int bizAddress) {
+        static Columns resolve(ResultSet rs) throws SQLException {
+            return new Columns(rs.findColumn("ID"), rs.findColumn("FIRST_NAME"), rs.findColumn("LAST_NAME"),
+                    rs.findColumn("DOB"), rs.findColumn("SALARY"), rs.findColumn("EMAIL"),
+                    rs.findColumn("HOME_ADDRESS"), rs.findColumn("BIZ_ADDRESS"));
+        }
+    }
+
+    private final DataSource dataSource;
+    private ExportFormat format = ExportFormat.CSV;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long rangeSize = DEFAULT_RANGE_SIZE;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private Consumer<ExportProgress> progressListener = progress -> {};
+
+    public PeopleExporter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public PeopleExporter setFormat(ExportFormat format) {
+        this.format = format;
+        return this;
+    }
+
+    public PeopleExporter setParallelism(int parallelism) {
+        this.parallelism = requirePositive(parallelism, "Parallelism");
+        return this;
+    }
+
+    public PeopleExporter setRangeSize(long rangeSize) {
+        this.rangeSize = requirePositive(rangeSize, "Range size");
+        return this;
+    }
+
+    public PeopleExporter setBufferSize(int bufferSize) {
+        if (bufferSize < 64) throw new IllegalArgumentException("Buffer size must be at least 64 bytes: " + bufferSize);
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public PeopleExporter setFetchSize(int fetchSize) {
+        this.fetchSize = requirePositive(fetchSize, "Fetch size");
+        return this;
+    }
+
+    /**
+     * @param progressListener called after every range, on the worker thread that finished it
+     */
+    public PeopleExporter setProgressListener(Consumer<ExportProgress> progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    public ExportProgress exportTo(Path target) throws IOException {
+        long startNanos = System.nanoTime();
+        long[] idRange = readIdRange();
+        int ranges = idRange == null ? 0 : (int) Math.min(Integer.MAX_VALUE, (idRange[1] - idRange[0]) / rangeSize + 1);
+        Export export = new Export(ranges, startNanos);
+
+        Path dir = target.toAbsolutePath().getParent();
+        Path parts = Files.createTempDirectory(dir, target.getFileName() + ".parts");
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Part> written = idRange == null ? List.of()
+                    : pool.invoke(new RangeTask(export, parts, idRange[0], idRange[1]));
+            try (FileChannel out = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                ChannelWriter writer = new ChannelWriter(bufferSize);
+                writer.open(out);
+                format.writeHeader(writer, FIELDS);
+                writer.close();
+                for (Part part : written) {
+                    try (FileChannel in = FileChannel.open(part.file(), READ)) {
+                        long position = 0;
+                        while (position < part.bytes()) {
+                            position += in.transferTo(position, part.bytes() - position, out);
+                        }
+                    }
+                    Files.delete(part.file());
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return export.progress();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            shutdown(pool);
+            Files.deleteIfExists(tmp);
+            deleteParts(parts);
+        }
+    }
+
+    private long[] readIdRange() {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(MIN_MAX_SQL)) {
+            rs.next();
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        } catch (SQLException e) {
+            throw new DataException("Unable to read the id range of PEOPLE", e);
+        }
+    }
+
+    /**
+     * State shared by the ranges of one export.
+     */
+    private final class Export {
+        private final ThreadLocal<ChannelWriter> writers = ThreadLocal.withInitial(() -> new ChannelWriter(bufferSize));
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger rangesDone = new AtomicInteger();
+        private final int ranges;
+        private final long startNanos;
+
+        Export(int ranges, long startNanos) {
+            this.ranges = ranges;
+            this.startNanos = startNanos;
+        }
+
+        void rangeDone(Part part) {
+            rows.addAndGet(part.rows());
+            bytes.addAndGet(part.bytes());
+            rangesDone.incrementAndGet();
+            progressListener.accept(progress());
+        }
+
+        ExportProgress progress() {
+            return new ExportProgress(rows.get(), bytes.get(), rangesDone.get(), ranges,
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+    }
+
+    private final class RangeTask extends RecursiveTask<List<Part>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Export export;
+        private final Path parts;
+        private final long fromId;
+        private final long toId;
+
+        RangeTask(Export export, Path parts, long fromId, long toId) {
+            this.export = export;
+            this.parts = parts;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected List<Part> compute() {
+            if (toId - fromId < rangeSize) {
+                Part part = exportRange(export.writers.get(), parts, fromId, toId);
+                export.rangeDone(part);
+                return List.of(part);
+            }
+            // split on a range boundary so every leaf but the last holds exactly rangeSize ids
+            long half = Math.max(1, (toId - fromId + 1) / rangeSize / 2) * rangeSize;
+            RangeTask left = new RangeTask(export, parts, fromId, fromId + half - 1);
+            RangeTask right = new RangeTask(export, parts, fromId + half, toId);
+            left.fork();
+            List<Part> rightParts = right.compute();
+            List<Part> all = new ArrayList<>(left.join());
+            all.addAll(rightParts);
+            return all;
+        }
+    }
+
+    private Part exportRange(ChannelWriter writer, Path parts, long fromId, long toId) {
+        Path file = parts.resolve(fromId + "." + format.getExtension());
+        long rows = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SELECT_RANGE_SQL);
+             FileChannel channel = FileChannel.open(file, CREATE_NEW, WRITE)) {
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, fromId);
+            ps.setLong(2, toId);
+            writer.open(channel);
+            try (ResultSet rs = ps.executeQuery()) {
+                Columns columns = Columns.resolve(rs);
+                while (rs.next()) {
+                    writeRow(writer, rs, columns);
+                    rows++;
+                }
+            }
+            return new Part(file, rows, writer.close());
+        } catch (SQLException e) {
+            throw new DataException("Unable to export people with ids " + fromId + " to " + toId, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write " + file, e);
+        }
+    }
+
+    private void writeRow(ChannelWriter out, ResultSet rs, Columns columns) throws SQLException, IOException {
+        format.startRow(out);
+        format.startField(out, 0, FIELDS[0]);
+        format.writeNumber(out, rs.getLong(columns.id()));
+        writeString(out, 1, rs.getString(columns.firstName()));
+        writeString(out, 2, rs.getString(columns.lastName()));
+        LocalDateTime dob = rs.getObject(columns.dob(), LocalDateTime.class);
+        // DOB is stored in UTC, see PeopleRepository.convertDobToTimestamp
+        writeString(out, 3, dob == null ? null : dob + "Z");
+        format.startField(out, 4, FIELDS[4]);
+        BigDecimal salary = rs.getBigDecimal(columns.salary());
+        if (salary == null) format.writeNull(out);
+        else format.writeNumber(out, salary.toPlainString());
+        writeString(out, 5, rs.getString(columns.email()));
+        writeId(out, 6, rs.getLong(columns.homeAddress()), rs.wasNull());
+        writeId(out, 7, rs.getLong(columns.bizAddress()), rs.wasNull());
+        format.endRow(out);
+    }
+
+    private void writeString(ChannelWriter out, int index, String value) throws IOException {
+        format.startField(out, index, FIELDS[index]);
+        if (value == null) format.writeNull(out);
+        else format.writeString(out, value);
+    }
+
+    private void writeId(ChannelWriter out, int index, long id, boolean isNull) throws IOException {
+        format.startField(out, index, FIELDS[index]);
+        if (isNull) format.writeNull(out);
+        else format.writeNumber(out, id);
+    }
+
+    /**
+     * After a failed range the others may still be running; let them finish before their part files are deleted.
+     */
+    private static void shutdown(ForkJoinPool pool) {
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void deleteParts(Path parts) throws IOException {
+        try (var files = Files.list(parts)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(parts);
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) throw new IllegalArgumentException(name + " must be positive: " + value);
+        return value;
+    }
+
+    private static long requirePositive(long value, String name) {
+        if (value < 1) throw new IllegalArgumentException(name + " must be positive: " + value);
+        return value;
+    }
+}
@@ -0,0 +1,36 @@
+package com.tsymbalt.peopledb.importer;
+
+import com.tsymbalt.peopledb.model.Person;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Parses one line of the Hr5m.csv sample data set into a {@link Person}.
+ */
+public class Hr5mPersonParser implements Function<String, Person> {
+    private static final DateTimeFormatter DOB_FORMAT = DateTimeFormatter.ofPattern("M/d/yyyy");
+    private static final DateTimeFormatter TOB_FORMAT = DateTimeFormatter.ofPattern("hh:mm:ss a", Locale.US);
+
+    private static final int FIRST_NAME = 2;
+    private static final int LAST_NAME = 4;
+    private static final int EMAIL = 6;
+    private static final int DOB = 10;
+    private static final int TOB = 11;
+    private static final int SALARY = 25;
+
+    @Override
+    public Person apply(String line) {
+        String[] a = line.split(",", -1);
+        LocalDate dob = LocalDate.parse(a[DOB], DOB_FORMAT);
+        LocalTime tob = LocalTime.parse(a[TOB], TOB_FORMAT);
+        ZonedDateTime zdtob = ZonedDateTime.of(LocalDateTime.of(dob, tob), ZoneId.of("+0"));
+        Person person = new Person(a[FIRST_NAME], a[LAST_NAME], zdtob);
+        person.setSalary(new BigDecimal(a[SALARY]));
+        person.setEmail(a[EMAIL]);
+        return person;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tsymbalt.peopledb.importer;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of a running (or finished) import.
+ * @param rowsCommitted rows committed so far, including rows committed by earlier runs that were resumed
+ * @param rowsThisRun rows committed by this run only
+ * @param elapsed time spent by this run
+ */
+public record ImportProgress(long rowsCommitted, long rowsThisRun, Duration elapsed) {
+
+    public double rowsPerSecond() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? 0 : rowsThisRun * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d rows committed (%,d this run) in %s, %,.0f rows/sec",
+                rowsCommitted, rowsThisRun, elapsed, rowsPerSecond());
+    }
+}
@@ -0,0 +1,296 @@
+package com.tsymbalt.peopledb.importer;
+
+import com.tsymbalt.peopledb.exception.DataException;
+import com.tsymbalt.peopledb.model.Person;
+import com.tsymbalt.peopledb.repository.PeopleRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streams a CSV file of people into the database.
+ * <p>
+ * A reader thread cuts the file into chunks of lines, which are parsed on a pool of worker threads.
+ * Parsed chunks are handed to the writer (the calling thread) in file order through a bounded queue,
+ * so memory use is capped at roughly {@code (queueCapacity + parserThreads) * chunkSize} people no matter
+ * how large the file is. The writer saves each chunk with {@link PeopleRepository#saveAll(java.util.Collection)}
+ * and commits every {@code commitInterval} rows. If a checkpoint is named, the number of rows committed so far is
+ * written to the IMPORT_CHECKPOINTS table in the same transaction as the rows themselves, and a later run with the
+ * same checkpoint skips that many rows before it starts. Since the count and the rows commit or roll back together,
+ * a run that is killed at any point can be resumed without losing or duplicating rows, provided it is resumed with
+ * the same input file.
+ * <p>
+ * The importer owns the statements it prepares on the connection; {@link #close()} releases them but leaves the
+ * connection itself open.
+ */
+public class PeopleImporter implements AutoCloseable {
+    public static final int DEFAULT_CHUNK_SIZE = 1_000;
+    public static final int DEFAULT_COMMIT_INTERVAL = 50_000;
+
+    private static final List<Person> END_OF_INPUT = List.of();
+    private static final String CREATE_CHECKPOINTS_SQL =
+            "CREATE TABLE IF NOT EXISTS IMPORT_CHECKPOINTS (NAME VARCHAR(255) PRIMARY KEY, ROWS_COMMITTED BIGINT NOT NULL)";
+    private static final String READ_CHECKPOINT_SQL = "SELECT ROWS_COMMITTED FROM IMPORT_CHECKPOINTS WHERE NAME = ?";
+    private static final String WRITE_CHECKPOINT_SQL = "MERGE INTO IMPORT_CHECKPOINTS (NAME, ROWS_COMMITTED) KEY (NAME) VALUES (?, ?)";
+
+    private final Connection connection;
+    private final PeopleRepository repository;
+    private final Function<String, Person> parser;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = parserThreads * 2;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int commitInterval = DEFAULT_COMMIT_INTERVAL;
+    private int headerLines = 1;
+    private String checkpoint;
+    private Consumer<ImportProgress> progressListener = progress -> {};
+
+    public PeopleImporter(Connection connection, Function<String, Person> parser) {
+        this.connection = connection;
+        this.repository = new PeopleRepository(connection);
+        this.parser = parser;
+    }
+
+    public PeopleImporter setParserThreads(int parserThreads) {
+        this.parserThreads = requirePositive(parserThreads, "Parser threads");
+        return this;
+    }
+
+    public PeopleImporter setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = requirePositive(queueCapacity, "Queue capacity");
+        return this;
+    }
+
+    public PeopleImporter setChunkSize(int chunkSize) {
+        this.chunkSize = requirePositive(chunkSize, "Chunk size");
+        repository.setBatchSize(chunkSize);
+        return this;
+    }
+
+    public PeopleImporter setCommitInterval(int commitInterval) {
+        this.commitInterval = requirePositive(commitInterval, "Commit interval");
+        return this;
+    }
+
+    public PeopleImporter setHeaderLines(int headerLines) {
+        if (headerLines < 0) throw new IllegalArgumentException("Header lines must not be negative: " + headerLines);
+        this.headerLines = headerLines;
+        return this;
+    }
+
+    /**
+     * @param checkpoint name under which the number of committed rows is recorded in IMPORT_CHECKPOINTS; a run
+     *                   started with an existing checkpoint resumes after the last committed row
+     */
+    public PeopleImporter setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * @param progressListener called after every commit, on the importing thread
+     */
+    public PeopleImporter setProgressListener(Consumer<ImportProgress> progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    public ImportProgress importFrom(Path csvFile) throws IOException {
+        long alreadyCommitted = readCheckpoint();
+        long startNanos = System.nanoTime();
+        long committedThisRun = 0;
+        long uncommitted = 0;
+
+        BlockingQueue<Future<List<Person>>> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> readFailure = new AtomicReference<>();
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+        Thread reader = new Thread(() -> readChunks(csvFile, alreadyCommitted, parsers, chunks, readFailure), "people-import-reader");
+        reader.setDaemon(true);
+
+        boolean autoCommit = getAutoCommit();
+        RuntimeException failure = null;
+        try {
+            connection.setAutoCommit(false);
+            reader.start();
+            List<Person> people;
+            while ((people = chunks.take().get()) != END_OF_INPUT) {
+                repository.saveAll(people);
+                uncommitted += people.size();
+                if (uncommitted >= commitInterval) {
+                    committedThisRun += commit(uncommitted, alreadyCommitted + committedThisRun);
+                    uncommitted = 0;
+                    progressListener.accept(progress(alreadyCommitted, committedThisRun, startNanos));
+                }
+            }
+            if (readFailure.get() != null) {
+                throw new DataException("Unable to read " + csvFile, readFailure.get());
+            }
+            committedThisRun += commit(uncommitted, alreadyCommitted + committedThisRun);
+            ImportProgress progress = progress(alreadyCommitted, committedThisRun, startNanos);
+            progressListener.accept(progress);
+            return progress;
+        } catch (SQLException e) {
+            failure = rollback(new DataException("Import of " + csvFile + " failed after " + (alreadyCommitted + committedThisRun) + " committed rows", e));
+            throw failure;
+        } catch (ExecutionException e) {
+            failure = rollback(new DataException("Import of " + csvFile + " failed after " + (alreadyCommitted + committedThisRun) + " committed rows", e.getCause()));
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = rollback(new DataException("Import of " + csvFile + " was interrupted", e));
+            throw failure;
+        } catch (RuntimeException e) {
+            failure = rollback(e);
+            throw failure;
+        } finally {
+            reader.interrupt();
+            parsers.shutdownNow();
+            restoreAutoCommit(autoCommit, failure);
+        }
+    }
+
+    private void readChunks(Path csvFile, long rowsToSkip, ExecutorService parsers,
+                            BlockingQueue<Future<List<Person>>> chunks, AtomicReference<Throwable> failure) {
+        try (BufferedReader in = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            for (long skipped = 0; skipped < headerLines + rowsToSkip; skipped++) {
+                if (in.readLine() == null) break;
+            }
+            long lineNumber = headerLines + rowsToSkip;
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    chunks.put(parsers.submit(parseTask(lines, lineNumber + 1)));
+                    lineNumber += lines.size();
+                    lines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!lines.isEmpty()) {
+                chunks.put(parsers.submit(parseTask(lines, lineNumber + 1)));
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (IOException | RuntimeException e) {
+            failure.set(e);
+        }
+        try {
+            chunks.put(CompletableFuture.completedFuture(END_OF_INPUT));
+        } catch (InterruptedException ignored) {
+            // the writer has already given up
+        }
+    }
+
+    private Callable<List<Person>> parseTask(List<String> lines, long firstLineNumber) {
+        return () -> {
+            List<Person> people = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                try {
+                    people.add(parser.apply(lines.get(i)));
+                } catch (RuntimeException e) {
+                    throw new DataException("Unable to parse line " + (firstLineNumber + i) + ": " + lines.get(i), e);
+                }
+            }
+            return people;
+        };
+    }
+
+    private long commit(long rows, long committedBefore) throws SQLException {
+        writeCheckpoint(committedBefore + rows);
+        connection.commit();
+        return rows;
+    }
+
+    private ImportProgress progress(long alreadyCommitted, long committedThisRun, long startNanos) {
+        return new ImportProgress(alreadyCommitted + committedThisRun, committedThisRun,
+                Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    private long readCheckpoint() {
+        if (checkpoint == null) return 0;
+        try (Statement create = connection.createStatement()) {
+            create.execute(CREATE_CHECKPOINTS_SQL);
+            try (PreparedStatement ps = connection.prepareStatement(READ_CHECKPOINT_SQL)) {
+                ps.setString(1, checkpoint);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataException("Unable to read checkpoint " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Records the count in the current transaction, so it is committed together with the rows it counts.
+     */
+    private void writeCheckpoint(long rowsCommitted) throws SQLException {
+        if (checkpoint == null) return;
+        try (PreparedStatement ps = connection.prepareStatement(WRITE_CHECKPOINT_SQL)) {
+            ps.setString(1, checkpoint);
+            ps.setLong(2, rowsCommitted);
+            ps.executeUpdate();
+        }
+    }
+
+    private boolean getAutoCommit() {
+        try {
+            return connection.getAutoCommit();
+        } catch (SQLException e) {
+            throw new DataException("Unable to read auto-commit mode", e);
+        }
+    }
+
+    /**
+     * @param failure the failure already propagating out of the import, if any; a failure to restore the mode is
+     *                added to it rather than replacing it
+     */
+    private void restoreAutoCommit(boolean autoCommit, RuntimeException failure) {
+        try {
+            connection.setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            if (failure == null) throw new DataException("Unable to restore auto-commit mode", e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return the failure that caused the rollback, with any failure to roll back added to it
+     */
+    private <E extends RuntimeException> E rollback(E failure) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+        repository.clearAddressDedupeCache();
+        return failure;
+    }
+
+    /**
+     * Closes the statements prepared by this importer. The connection is left open.
+     */
+    @Override
+    public void close() {
+        repository.close();
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) throw new IllegalArgumentException(name + " must be positive: " + value);
+        return value;
+    }
+}
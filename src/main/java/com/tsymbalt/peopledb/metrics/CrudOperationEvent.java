@@ -0,0 +1,25 @@
+package com.tsymbalt.peopledb.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event recorded for every repository call, e.g. with {@code -XX:StartFlightRecording}.
+ * Costs next to nothing while no recording has the event enabled.
+ */
+@Name("com.tsymbalt.peopledb.CrudOperation")
+@Label("CRUD Operation")
+@Category({"PeopleDB", "Repository"})
+@StackTrace(false)
+public class CrudOperationEvent extends Event {
+    @Label("Repository")
+    public String repository;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Failed")
+    public boolean failed;
+}
@@ -0,0 +1,12 @@
+package com.tsymbalt.peopledb.metrics;
+
+/**
+ * Receives every repository call once it completes, on the calling thread, so implementations should be cheap
+ * and thread safe.
+ */
+@FunctionalInterface
+public interface MetricsListener {
+    MetricsListener NONE = sample -> {};
+
+    void onOperation(OperationSample sample);
+}
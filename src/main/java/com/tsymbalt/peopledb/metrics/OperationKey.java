@@ -0,0 +1,6 @@
+package com.tsymbalt.peopledb.metrics;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+
+public record OperationKey(Class<?> repositoryType, CrudOperation operation) {
+}
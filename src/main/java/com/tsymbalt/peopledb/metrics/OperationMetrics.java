@@ -0,0 +1,13 @@
+package com.tsymbalt.peopledb.metrics;
+
+import java.time.Duration;
+
+public record OperationMetrics(long calls, long errors, long rows,
+                               Duration p50, Duration p90, Duration p99, Duration max) {
+    public static final OperationMetrics EMPTY =
+            new OperationMetrics(0, 0, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+    public double errorRate() {
+        return calls == 0 ? 0 : (double) errors / calls;
+    }
+}
@@ -0,0 +1,15 @@
+package com.tsymbalt.peopledb.metrics;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+
+/**
+ * One completed repository call.
+ * @param rows rows written, or entities read, by the call
+ * @param error what the call failed with, or null if it succeeded
+ */
+public record OperationSample(Class<?> repositoryType, CrudOperation operation, long rows, long durationNanos, Throwable error) {
+
+    public boolean failed() {
+        return error != null;
+    }
+}
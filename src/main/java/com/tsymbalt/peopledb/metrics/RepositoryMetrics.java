@@ -0,0 +1,56 @@
+package com.tsymbalt.peopledb.metrics;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link MetricsListener} that keeps call, error and row counts and a latency histogram per
+ * repository class and {@link CrudOperation}. One instance can be shared by every repository.
+ */
+public class RepositoryMetrics implements MetricsListener {
+    private final Map<OperationKey, Recorder> recorders = new ConcurrentHashMap<>();
+
+    @Override
+    public void onOperation(OperationSample sample) {
+        Recorder recorder = recorders.computeIfAbsent(new OperationKey(sample.repositoryType(), sample.operation()), k -> new Recorder());
+        recorder.calls.increment();
+        if (sample.failed()) recorder.errors.increment();
+        recorder.rows.add(sample.rows());
+        recorder.latencies.record(sample.durationNanos());
+    }
+
+    public OperationMetrics get(Class<?> repositoryType, CrudOperation operation) {
+        Recorder recorder = recorders.get(new OperationKey(repositoryType, operation));
+        return recorder == null ? OperationMetrics.EMPTY : recorder.snapshot();
+    }
+
+    public Map<OperationKey, OperationMetrics> snapshot() {
+        Map<OperationKey, OperationMetrics> snapshot = new LinkedHashMap<>();
+        recorders.forEach((key, recorder) -> snapshot.put(key, recorder.snapshot()));
+        return snapshot;
+    }
+
+    public void reset() {
+        recorders.clear();
+    }
+
+    private static class Recorder {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        OperationMetrics snapshot() {
+            return new OperationMetrics(calls.sum(), errors.sum(), rows.sum(),
+                    Duration.ofNanos(latencies.percentile(50)),
+                    Duration.ofNanos(latencies.percentile(90)),
+                    Duration.ofNanos(latencies.percentile(99)),
+                    Duration.ofNanos(latencies.max()));
+        }
+    }
+}
@@ -4,8 +4,13 @@ public enum CrudOperation {
     SAVE,
     UPDATE,
     FIND_BY_ID,
+    FIND_ALL_BY_ID,
     FIND_ALL,
+    FIND_PAGE,
+    FIND_BY_CONTENT,
     DELETE_ONE,
     DELETE_MANY,
-    COUNT
+    COUNT,
+    AGGREGATE,
+    FIND_BY_CRITERIA
 }
@@ -7,6 +7,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 public class Person {
     @Id
@@ -19,6 +20,8 @@ public class Person {
     private String email;
     private Optional<Address> homeAddress = Optional.empty();
     private Optional<Address> businessAddress = Optional.empty();
+    private volatile Supplier<Optional<Address>> homeAddressLoader;
+    private volatile Supplier<Optional<Address>> businessAddressLoader;
 
     public String getEmail() {
         return email;
@@ -107,16 +110,53 @@ public class Person {
 
     public void setHomeAddress(Address homeAddress) {
         this.homeAddress = Optional.ofNullable(homeAddress);
+        this.homeAddressLoader = null;
+    }
+
+    /**
+     * Defers loading the home address until {@link #getHomeAddress()} is first called. The loader runs at most
+     * once, even if several threads share this person.
+     */
+    public void setHomeAddressLoader(Supplier<Optional<Address>> homeAddressLoader) {
+        this.homeAddressLoader = homeAddressLoader;
     }
 
     public Optional<Address> getHomeAddress() {
+        if (homeAddressLoader != null) {
+            synchronized (this) {
+                Supplier<Optional<Address>> loader = homeAddressLoader;
+                if (loader != null) {
+                    homeAddress = loader.get();
+                    homeAddressLoader = null;
+                }
+            }
+        }
         return homeAddress;
     }
 
     public void setBusinessAddress(Address businessAddress) {
         this.businessAddress = Optional.ofNullable(businessAddress);
+        this.businessAddressLoader = null;
     }
+
+    /**
+     * Defers loading the business address until {@link #getBusinessAddress()} is first called. The loader runs
+     * at most once, even if several threads share this person.
+     */
+    public void setBusinessAddressLoader(Supplier<Optional<Address>> businessAddressLoader) {
+        this.businessAddressLoader = businessAddressLoader;
+    }
+
     public Optional<Address> getBusinessAddress() {
+        if (businessAddressLoader != null) {
+            synchronized (this) {
+                Supplier<Optional<Address>> loader = businessAddressLoader;
+                if (loader != null) {
+                    businessAddress = loader.get();
+                    businessAddressLoader = null;
+                }
+            }
+        }
         return businessAddress;
     }
 }
@@ -0,0 +1,14 @@
+package com.tsymbalt.peopledb.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Salary statistics for one group of people.
+ * @param groupKey the group's value for each grouping, in the order the groupings were given
+ *                 (a {@link Region} for regions, an Integer for years); null for people without one
+ * @param count number of people in the group
+ */
+public record SalaryAggregate(List<Object> groupKey, long count, BigDecimal sum, BigDecimal average,
+                              BigDecimal min, BigDecimal max) {
+}
@@ -5,19 +5,230 @@ import com.tsymbalt.peopledb.model.Address;
 import com.tsymbalt.peopledb.model.CrudOperation;
 import com.tsymbalt.peopledb.model.Region;
 
+import com.tsymbalt.peopledb.exception.DataException;
+import com.tsymbalt.peopledb.exception.UnableToSaveException;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.*;
 
+/**
+ * Addresses are deduplicated by content: saving an address whose every column matches an existing row
+ * assigns that row's id instead of inserting a copy. Known content-to-id pairs are kept in a bounded
+ * in-memory map, backed by the FIND_BY_CONTENT lookup for addresses saved earlier or elsewhere.
+ * <p>
+ * The unique index on the content columns (see {@link com.tsymbalt.peopledb.schema.SchemaManager}) settles
+ * races: when two callers insert the same new content, the loser's insert fails as a duplicate and it takes the
+ * winner's id instead. Deletes through this repository drop their ids from the map; after rolling back a
+ * transaction that saved addresses, call {@link #clearDedupeCache()} so that rolled-back ids are not reused.
+ */
 public class AddressRepository extends CRUDRepository<Address> {
+    public static final int DEFAULT_DEDUPE_CACHE_SIZE = 10_000;
+
+    public static final String FIND_BY_CONTENT_SQL = """
+            SELECT ID FROM ADDRESSES
+            WHERE STREET_ADDRESS IS NOT DISTINCT FROM ? AND ADDRESS2 IS NOT DISTINCT FROM ? AND CITY IS NOT DISTINCT FROM ?
+            AND STATE IS NOT DISTINCT FROM ? AND POSTCODE IS NOT DISTINCT FROM ? AND COUNTY IS NOT DISTINCT FROM ?
+            AND REGION IS NOT DISTINCT FROM ? AND COUNTRY IS NOT DISTINCT FROM ?
+            LIMIT 1""";
+
+    private static final ProjectionCatalog PROJECTIONS = new ProjectionCatalog("ADDRESSES AS A", "A.ID", Map.of(
+            "id", new ProjectionCatalog.Property("A.ID", null),
+            "streetAddress", new ProjectionCatalog.Property("A.STREET_ADDRESS", null),
+            "address2", new ProjectionCatalog.Property("A.ADDRESS2", null),
+            "city", new ProjectionCatalog.Property("A.CITY", null),
+            "state", new ProjectionCatalog.Property("A.STATE", null),
+            "postcode", new ProjectionCatalog.Property("A.POSTCODE", null),
+            "county", new ProjectionCatalog.Property("A.COUNTY", null),
+            "region", new ProjectionCatalog.Property("A.REGION", null),
+            "country", new ProjectionCatalog.Property("A.COUNTRY", null)));
+
+    private record AddressKey(String streetAddress, String address2, String city, String state, String postcode,
+                              String county, Region region, String country) {
+        static AddressKey of(Address address) {
+            return new AddressKey(address.streetAddress(), address.address2(), address.city(), address.state(),
+                    address.postcode(), address.county(), address.region(), address.country());
+        }
+    }
+
+    private static final String DUPLICATE_KEY_STATE = "23505";
+
+    private final Map<AddressKey, Long> idsByContent = Collections.synchronizedMap(new LruMap<>(DEFAULT_DEDUPE_CACHE_SIZE));
+
     public AddressRepository(Connection connection) {
         super(connection);
     }
 
+    public AddressRepository(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    /**
+     * Saves the address, unless it already has an id or an address with the same content exists,
+     * in which case no row is written.
+     */
+    @Override
+    public Address save(Address address) {
+        if (address.id() != null) return address;
+        AddressKey key = AddressKey.of(address);
+        Long existingId = findIdByContent(key);
+        if (existingId == null) {
+            try {
+                super.save(address);
+                idsByContent.put(key, address.id());
+                return address;
+            } catch (UnableToSaveException e) {
+                if (!isDuplicateKey(e)) throw e;
+                existingId = findIdByContent(key);
+                if (existingId == null) throw e;
+            }
+        }
+        EntityMetadata.of(Address.class).setId(address, existingId);
+        return address;
+    }
+
+    /**
+     * Saves the addresses in batches like {@link CRUDRepository#saveAll(Collection)}, but inserts only one row
+     * per distinct content, and none for content that already exists. Every address gets its row's id.
+     */
+    @Override
+    public List<Address> saveAll(Collection<Address> addresses) {
+        Map<AddressKey, List<Address>> unsavedByContent = new LinkedHashMap<>();
+        for (Address address : addresses) {
+            if (address.id() == null) {
+                unsavedByContent.computeIfAbsent(AddressKey.of(address), k -> new ArrayList<>()).add(address);
+            }
+        }
+        List<Address> toInsert = new ArrayList<>();
+        for (Map.Entry<AddressKey, List<Address>> content : unsavedByContent.entrySet()) {
+            Long existingId = findIdByContent(content.getKey());
+            if (existingId != null) {
+                assignId(content.getValue(), existingId);
+            } else {
+                toInsert.add(content.getValue().get(0));
+            }
+        }
+        try {
+            super.saveAll(toInsert);
+        } catch (UnableToSaveException e) {
+            if (!isDuplicateKey(e)) throw e;
+            // another writer inserted some of this content first; settle each address on its own
+            for (Address address : toInsert) {
+                save(address);
+            }
+        }
+        for (Address inserted : toInsert) {
+            AddressKey key = AddressKey.of(inserted);
+            idsByContent.put(key, inserted.id());
+            assignId(unsavedByContent.get(key), inserted.id());
+        }
+        return new ArrayList<>(addresses);
+    }
+
+    private void assignId(List<Address> addresses, Long id) {
+        EntityMetadata metadata = EntityMetadata.of(Address.class);
+        for (Address address : addresses) {
+            metadata.setId(address, id);
+        }
+    }
+
+    private Long findIdByContent(AddressKey key) {
+        Long id = idsByContent.get(key);
+        if (id != null) return id;
+        try {
+            id = execute(CrudOperation.FIND_BY_CONTENT, c -> {
+                PreparedStatement ps = prepare(c, CrudOperation.FIND_BY_CONTENT);
+                ps.setString(1, key.streetAddress());
+                ps.setString(2, key.address2());
+                ps.setString(3, key.city());
+                ps.setString(4, key.state());
+                ps.setString(5, key.postcode());
+                ps.setString(6, key.county());
+                ps.setString(7, key.region() == null ? null : key.region().toString());
+                ps.setString(8, key.country());
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : null;
+                }
+            }, found -> found == null ? 0 : 1);
+        } catch (SQLException e) {
+            throw new DataException("Unable to look up address " + key, e);
+        }
+        if (id != null) idsByContent.put(key, id);
+        return id;
+    }
+
+    private static boolean isDuplicateKey(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && DUPLICATE_KEY_STATE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void delete(Address address) {
+        try {
+            super.delete(address);
+        } finally {
+            if (address.id() != null) forgetIds(Set.of(address.id()));
+        }
+    }
+
+    @Override
+    public long deleteAllById(Collection<Long> ids, boolean inOneTransaction) {
+        try {
+            return super.deleteAllById(ids, inOneTransaction);
+        } finally {
+            forgetIds(new HashSet<>(ids));
+        }
+    }
+
+    private void forgetIds(Set<Long> ids) {
+        synchronized (idsByContent) {
+            idsByContent.values().removeIf(ids::contains);
+        }
+    }
+
+    /**
+     * Forgets the known content-to-id pairs, e.g. after rolling back a transaction that inserted addresses.
+     */
+    public void clearDedupeCache() {
+        idsByContent.clear();
+    }
+
+    @Override
+    ProjectionCatalog getProjectionCatalog() {
+        return PROJECTIONS;
+    }
+
+    @Override
+    protected String getCriteriaSelectSQL() {
+        return "SELECT A.ID, A.STREET_ADDRESS, A.ADDRESS2, A.CITY, A.STATE, A.POSTCODE, A.COUNTY, A.REGION, A.COUNTRY FROM ADDRESSES AS A";
+    }
+
+    @Override
+    protected String getFindByContentSQL() {
+        return FIND_BY_CONTENT_SQL;
+    }
+
+    @Override
+    protected String getDeleteSQL() {
+        return "DELETE FROM ADDRESSES WHERE ID=?";
+    }
+
+    @Override
+    protected String getDeleteInSQL() {
+        return "DELETE FROM ADDRESSES WHERE ID = ANY(?)";
+    }
+
     @Override
     @SQL(operationType = CrudOperation.SAVE, value = """
-            INSERT INTO ADDRESSES (STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY
+            INSERT INTO ADDRESSES (STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY)
             VALUES(?, ?, ?, ?, ?, ?, ?, ?)""")
     void mapForSave(Address entity, PreparedStatement ps) throws SQLException {
         ps.setString(1, entity.streetAddress());
@@ -26,10 +237,8 @@ public class AddressRepository extends CRUDRepository<Address> {
         ps.setString(4, entity.state());
         ps.setString(5, entity.postcode());
         ps.setString(6, entity.county());
-        ps.setString(7, entity.region().toString());
+        ps.setString(7, entity.region() == null ? null : entity.region().toString());
         ps.setString(8, entity.country());
-
-
     }
 
     @Override
@@ -37,10 +246,16 @@ public class AddressRepository extends CRUDRepository<Address> {
 
     }
 
+    @Override
+    SQLFunction<ResultSet, Address> compileRowMapper(ResultSetMetaData metaData) throws SQLException {
+        AddressColumns columns = AddressColumns.resolve(new ColumnLabels(metaData), "");
+        return columns == null ? this::extractEntityFromResultSet : columns::read;
+    }
+
     @Override
     @SQL(operationType = CrudOperation.FIND_BY_ID, value = """
             SELECT ID, STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY
-            FROM ADDRESS WHERE ID = ?
+            FROM ADDRESSES WHERE ID = ?
                         """)
     Address extractEntityFromResultSet(ResultSet rs) throws SQLException {
         long id = rs.getLong("ID");
@@ -50,9 +265,45 @@ public class AddressRepository extends CRUDRepository<Address> {
         String state = rs.getString("STATE");
         String postcode = rs.getString("POSTCODE");
         String county = rs.getString("COUNTY");
-        Region region = Region.valueOf(rs.getString("REGION").toUpperCase());
+        String regionName = rs.getString("REGION");
+        Region region = regionName == null ? null : Region.valueOf(regionName.toUpperCase());
         String country = rs.getString("COUNTRY");
         Address address = new Address(id, streetAddress, address2, city, state, postcode, country, county, region);
         return address;
     }
+
+    /**
+     * Column indexes of an address within a result set, resolved once per query shape. The columns are
+     * labelled {@code prefix + "ID"}, {@code prefix + "STREET_ADDRESS"} and so on.
+     */
+    record AddressColumns(int id, int streetAddress, int address2, int city, int state, int postcode,
+                          int county, int region, int country) {
+
+        /**
+         * @return the indexes, or null if the result set has no {@code prefix + "ID"} column
+         */
+        static AddressColumns resolve(ColumnLabels labels, String prefix) {
+            int id = labels.indexOf(prefix + "ID");
+            if (id == 0) return null;
+            return new AddressColumns(id, labels.indexOf(prefix + "STREET_ADDRESS"), labels.indexOf(prefix + "ADDRESS2"),
+                    labels.indexOf(prefix + "CITY"), labels.indexOf(prefix + "STATE"), labels.indexOf(prefix + "POSTCODE"),
+                    labels.indexOf(prefix + "COUNTY"), labels.indexOf(prefix + "REGION"), labels.indexOf(prefix + "COUNTRY"));
+        }
+
+        /**
+         * @return the address in the current row, or null if its ID is NULL (e.g. an unmatched outer join)
+         */
+        Address read(ResultSet rs) throws SQLException {
+            long addrId = rs.getLong(id);
+            if (rs.wasNull()) return null;
+            String regionName = getString(rs, region);
+            return new Address(addrId, getString(rs, streetAddress), getString(rs, address2), getString(rs, city),
+                    getString(rs, state), getString(rs, postcode), getString(rs, country), getString(rs, county),
+                    regionName == null ? null : Region.valueOf(regionName.toUpperCase()));
+        }
+
+        private static String getString(ResultSet rs, int columnIndex) throws SQLException {
+            return columnIndex == 0 ? null : rs.getString(columnIndex);
+        }
+    }
 }
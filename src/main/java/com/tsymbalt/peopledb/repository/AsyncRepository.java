@@ -0,0 +1,166 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.exception.DataException;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking facade over a repository. Every call runs on a virtual thread when the JVM has them
+ * (Java 21+), or on a pooled platform thread otherwise, and completes the returned future with the result.
+ * <p>
+ * Two limits keep thousands of callers from overwhelming the database:
+ * <ul>
+ *     <li>{@code maxConcurrency} calls run against the repository at once; the rest wait (cheaply, on their
+ *     virtual thread) for a slot. For a single-connection repository this is always 1, since a JDBC
+ *     connection can't be used by two threads at a time.</li>
+ *     <li>{@code maxInFlight} calls may be submitted and not yet completed. Once that many are pending,
+ *     the submitting thread blocks until one completes (backpressure).</li>
+ * </ul>
+ * Create one with {@link CRUDRepository#async(int, int)}.
+ */
+public class AsyncRepository<T> implements AutoCloseable {
+    private final CRUDRepository<T> repository;
+    private final ExecutorService executor;
+    private final Semaphore concurrency;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    AsyncRepository(CRUDRepository<T> repository, int maxConcurrency, int maxInFlight) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+        if (maxInFlight < 1) throw new IllegalArgumentException("Max in-flight calls must be positive: " + maxInFlight);
+        this.repository = repository;
+        this.executor = newVirtualThreadExecutor();
+        this.concurrency = new Semaphore(maxConcurrency, true);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // pre-21 JVM: the in-flight limit also bounds how many of these threads exist
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "async-repository");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<T> saveAsync(T entity) {
+        return submit(() -> repository.save(entity));
+    }
+
+    public CompletableFuture<List<T>> saveAllAsync(Collection<T> entities) {
+        return submit(() -> repository.saveAll(entities));
+    }
+
+    public CompletableFuture<Optional<T>> findByIdAsync(Long id) {
+        return submit(() -> repository.findById(id));
+    }
+
+    public CompletableFuture<Map<Long, T>> findAllByIdAsync(Collection<Long> ids) {
+        return submit(() -> repository.findAllById(ids));
+    }
+
+    public CompletableFuture<List<T>> findAllAsync() {
+        return submit(repository::findAll);
+    }
+
+    public CompletableFuture<List<T>> findPageAsync(Long afterId, int limit) {
+        return submit(() -> repository.findPage(afterId, limit));
+    }
+
+    public CompletableFuture<Long> countAsync() {
+        return submit(repository::count);
+    }
+
+    public CompletableFuture<Void> updateAsync(T entity) {
+        return submit(() -> {
+            repository.update(entity);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteAsync(T entity) {
+        return submit(() -> {
+            repository.delete(entity);
+            return null;
+        });
+    }
+
+    @SafeVarargs
+    public final CompletableFuture<Void> deleteAsync(T... entities) {
+        List<Long> ids = new ArrayList<>(entities.length);
+        for (T entity : entities) ids.add(EntityMetadata.of(entity.getClass()).getId(entity));
+        return submit(() -> {
+            repository.deleteAllById(ids);
+            return null;
+        });
+    }
+
+    /**
+     * @return how many calls have been submitted and not yet completed
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private <R> CompletableFuture<R> submit(Supplier<R> call) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new DataException("Interrupted while waiting to submit", e));
+        }
+        CompletableFuture<R> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    concurrency.acquire();
+                    try {
+                        result.complete(call.get());
+                    } finally {
+                        concurrency.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result.completeExceptionally(new DataException("Interrupted while waiting for a connection slot", e));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Stops accepting calls and waits for the submitted ones to finish. The repository itself is left open.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,38 +1,237 @@
 package com.tsymbalt.peopledb.repository;
 
-import com.tsymbalt.peopledb.annotation.Id;
 import com.tsymbalt.peopledb.annotation.MultiSQL;
 import com.tsymbalt.peopledb.annotation.SQL;
+import com.tsymbalt.peopledb.datasource.PooledDataSource;
 import com.tsymbalt.peopledb.exception.DataException;
 import com.tsymbalt.peopledb.exception.UnableToSaveException;
+import com.tsymbalt.peopledb.metrics.CrudOperationEvent;
+import com.tsymbalt.peopledb.metrics.MetricsListener;
+import com.tsymbalt.peopledb.metrics.OperationSample;
+import com.tsymbalt.peopledb.metrics.RepositoryMetrics;
 import com.tsymbalt.peopledb.model.CrudOperation;
 
+import javax.sql.DataSource;
+import java.lang.ref.WeakReference;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static java.util.stream.Collectors.joining;
+abstract class CRUDRepository<T> implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_FETCH_SIZE = 1_000;
+    public static final int DEFAULT_SNAPSHOT_CAPACITY = 10_000;
+    static final int ROW_MAPPER_CACHE_SIZE = 256;
+    static final int ID_CHUNK_SIZE = 1_000;
 
-abstract class CRUDRepository<T> {
     protected Connection connection;
-    private PreparedStatement savePS;
-    private PreparedStatement findByIdPS;
+    private final DataSource dataSource;
+    private final int statementCacheSize;
+    private final Map<Connection, StatementCache> statementCaches = Collections.synchronizedMap(new HashMap<>());
+    private final Consumer<Connection> discardListener = this::closeStatementCache;
+    private final Map<CrudOperation, String> sqlByOperation = new ConcurrentHashMap<>();
+    private final Map<String, SQLFunction<ResultSet, T>> rowMappersBySQL = Collections.synchronizedMap(new LruMap<>(ROW_MAPPER_CACHE_SIZE));
+    private final Map<Class<?>, Projection<?>> projections = new ConcurrentHashMap<>();
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile EntityCache<T> entityCache;
+    private volatile MetricsListener metricsListener = MetricsListener.NONE;
+    private volatile Map<Long, Snapshot> snapshots = Collections.synchronizedMap(new LruMap<>(DEFAULT_SNAPSHOT_CAPACITY));
+    private final Map<Integer, String> updateSQLByChangedColumns = new ConcurrentHashMap<>();
 
     public CRUDRepository(Connection connection) {
+        this(connection, StatementCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param statementCacheSize how many prepared statements to keep open for this repository; the least
+     *                           recently used one is closed when the limit is reached
+     */
+    public CRUDRepository(Connection connection, int statementCacheSize) {
+        this.connection = connection;
+        this.dataSource = null;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Creates a repository that borrows a connection from the data source for every call, so one instance
+     * can be shared by many threads. With a {@link PooledDataSource}, each pooled connection gets its own
+     * statement cache, kept across borrows and closed when the pool discards the connection. With any other
+     * data source, statements are cached only for the duration of one borrow.
+     */
+    public CRUDRepository(DataSource dataSource) {
+        this(dataSource, StatementCache.DEFAULT_CAPACITY);
+    }
+
+    public CRUDRepository(DataSource dataSource, int statementCacheSize) {
+        this.connection = null;
+        this.dataSource = dataSource;
+        this.statementCacheSize = statementCacheSize;
+        if (dataSource instanceof PooledDataSource pool) pool.addDiscardListener(discardListener);
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Runs the work on this repository's connection, or on a connection borrowed from the data source
+     * (and returned afterwards) when the repository is pooled.
+     */
+    <R> R withConnection(SQLFunction<Connection, R> work) throws SQLException {
+        if (dataSource == null) return work.apply(connection);
+        try (Connection borrowed = dataSource.getConnection()) {
+            try {
+                return work.apply(borrowed);
+            } finally {
+                // other data sources may hand out a new connection object per borrow
+                if (!(dataSource instanceof PooledDataSource)) closeStatementCache(borrowed);
+            }
+        }
+    }
+
+    private void closeStatementCache(Connection connection) {
+        StatementCache cache = statementCaches.remove(connection);
+        if (cache != null) cache.close();
+    }
+
+    /**
+     * Runs the work like {@link #withConnection} and reports it to the {@link #setMetricsListener metrics listener}
+     * and as a {@link CrudOperationEvent} JFR event, whether it succeeds or fails.
+     * @param rowCount how many rows the result stands for
+     */
+    <R> R execute(CrudOperation operation, SQLFunction<Connection, R> work, ToLongFunction<? super R> rowCount) throws SQLException {
+        CrudOperationEvent event = new CrudOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        R result = null;
+        Throwable error = null;
         try {
-            this.connection = connection;
-            savePS = connection.prepareStatement(getSQLByAnnotation(CrudOperation.SAVE, this::getSaveSQL), Statement.RETURN_GENERATED_KEYS);
-            findByIdPS = connection.prepareStatement(getSQLByAnnotation(CrudOperation.FIND_BY_ID, this::getFindByIdSQL));
-        } catch (SQLException e) {
-            throw new DataException("Unable to create prepared statements for CrudRepository", e);
+            result = withConnection(work);
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            record(operation, error == null ? rowCount.applyAsLong(result) : 0, System.nanoTime() - start, error, event);
         }
     }
 
+    private void record(CrudOperation operation, long rows, long nanos, Throwable error, CrudOperationEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.repository = getClass().getSimpleName();
+            event.operation = operation.name();
+            event.rows = rows;
+            event.failed = error != null;
+            event.commit();
+        }
+        MetricsListener listener = metricsListener;
+        if (listener != MetricsListener.NONE) {
+            listener.onOperation(new OperationSample(getClass(), operation, rows, nanos, error));
+        }
+    }
+
+    /**
+     * @param metricsListener receives every call this repository makes, e.g. a shared {@link RepositoryMetrics}
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener == null ? MetricsListener.NONE : metricsListener;
+    }
+
+    /**
+     * @return the statement for this operation cached on the given connection, preparing it on first use
+     */
+    PreparedStatement prepare(Connection connection, CrudOperation operationType) throws SQLException {
+        return prepare(connection, operationType, getSQL(operationType));
+    }
+
+    PreparedStatement prepare(Connection connection, CrudOperation operationType, String sql) throws SQLException {
+        return statementCaches.computeIfAbsent(connection, c -> new StatementCache(c, statementCacheSize))
+                .prepare(operationType, sql);
+    }
+
+    /**
+     * @return the row mapper compiled for this query's result set shape. It is compiled from the result set's
+     * metadata the first time the query runs and reused for every row of every later execution, for the
+     * {@value #ROW_MAPPER_CACHE_SIZE} most recently used query texts.
+     */
+    SQLFunction<ResultSet, T> rowMapperFor(String sql, ResultSet rs) throws SQLException {
+        SQLFunction<ResultSet, T> rowMapper = rowMappersBySQL.get(sql);
+        if (rowMapper == null) {
+            rowMapper = compileRowMapper(rs.getMetaData());
+            rowMappersBySQL.put(sql, rowMapper);
+        }
+        return rowMapper;
+    }
+
+    /**
+     * @return a mapper that looks up the compiled row mapper for the query on its first row and keeps using it,
+     * for callers such as {@link #stream} that don't see the result set before the rows
+     */
+    SQLFunction<ResultSet, T> lazyRowMapperFor(String sql) {
+        return new SQLFunction<>() {
+            private SQLFunction<ResultSet, T> rowMapper;
+
+            @Override
+            public T apply(ResultSet rs) throws SQLException {
+                if (rowMapper == null) rowMapper = rowMapperFor(sql, rs);
+                return rowMapper.apply(rs);
+            }
+        };
+    }
+
+    /**
+     * Override to resolve column indexes once per result set shape and return a mapper that reads rows by index.
+     * The default maps each row with {@link #extractEntityFromResultSet}.
+     */
+    SQLFunction<ResultSet, T> compileRowMapper(ResultSetMetaData metaData) throws SQLException {
+        return this::extractEntityFromResultSet;
+    }
+
+    /**
+     * @return the SQL for this operation, from its @SQL annotation or else its getXxxSQL() method,
+     * resolved once per repository
+     */
+    String getSQL(CrudOperation operationType) {
+        String sql = sqlByOperation.get(operationType);
+        if (sql == null) {
+            sql = getSQLByAnnotation(operationType, getSQLGetter(operationType));
+            sqlByOperation.put(operationType, sql);
+        }
+        return sql;
+    }
+
+    private Supplier<String> getSQLGetter(CrudOperation operationType) {
+        return switch (operationType) {
+            case SAVE -> this::getSaveSQL;
+            case UPDATE -> this::getUpdateSQL;
+            case FIND_BY_ID -> this::getFindByIdSQL;
+            case FIND_ALL_BY_ID -> this::getFindAllByIdSQL;
+            case FIND_ALL -> this::getFindAllSQL;
+            case FIND_PAGE -> this::getFindPageSQL;
+            case FIND_BY_CONTENT -> this::getFindByContentSQL;
+            case DELETE_ONE -> this::getDeleteSQL;
+            case DELETE_MANY -> this::getDeleteInSQL;
+            case COUNT -> this::getCountSQL;
+            case AGGREGATE -> () -> {throw new RuntimeException("Aggregate SQL is built per query.");};
+            case FIND_BY_CRITERIA -> this::getCriteriaSelectSQL;
+        };
+    }
+
     private String getSQLByAnnotation(CrudOperation operationType, Supplier<String> sqlGetter) {
+        Map<CrudOperation, String> generated = GeneratedMetadata.statementsFor(this.getClass());
+        if (generated != null) {
+            String sql = generated.get(operationType);
+            return sql != null ? sql : sqlGetter.get();
+        }
+
         Stream<SQL> multiSQLStream =  Arrays.stream(this.getClass().getDeclaredMethods())
                 .filter(m-> m.isAnnotationPresent(MultiSQL.class))
                 .map(m -> m.getAnnotation(MultiSQL.class))
@@ -50,140 +249,820 @@ abstract class CRUDRepository<T> {
 
     public T save(T entity) throws UnableToSaveException {
         try {
-            mapForSave(entity, savePS);
-            int recordsAffected = savePS.executeUpdate();
-            ResultSet rs = savePS.getGeneratedKeys();
-            while (rs.next()) {
-                long id = rs.getLong(1);
-                //entity.setId(id);
-                setIdByAnnotation(id, entity);
-                System.out.println(entity);
-            }
-            System.out.printf("Records affected: %d%n", recordsAffected);
+            execute(CrudOperation.SAVE, c -> {
+                PreparedStatement savePS = prepare(c, CrudOperation.SAVE);
+                mapForSave(entity, savePS);
+                int recordsAffected = savePS.executeUpdate();
+                try (ResultSet rs = savePS.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        //entity.setId(id);
+                        setIdByAnnotation(id, entity);
+                        trackLoaded(entity);
+                        invalidateCached(id);
+                    }
+                }
+                return recordsAffected;
+            }, Integer::longValue);
         } catch (SQLException e) {
-            e.printStackTrace();
-            throw new UnableToSaveException("Tried to save a person: " + entity);
+            throw new UnableToSaveException("Tried to save: " + entity, e);
         }
         return entity;
     }
 
+    /**
+     * Saves the entities in JDBC batches of {@link #setBatchSize(int) batchSize} rows and assigns
+     * the generated ids back to each entity's @Id field.
+     * @return the same entities, in the order given, now carrying their ids
+     */
+    public List<T> saveAll(Collection<T> entities) throws UnableToSaveException {
+        saveAll(entities.stream());
+        return new ArrayList<>(entities);
+    }
+
+    /**
+     * Same as {@link #saveAll(Collection)} but only holds one batch in memory at a time,
+     * so it is suitable for very large inputs.
+     * @return the number of entities saved
+     */
+    public long saveAll(Stream<T> entities) throws UnableToSaveException {
+        try {
+            return execute(CrudOperation.SAVE, c -> {
+                long savedCount = 0;
+                List<T> batch = new ArrayList<>(batchSize);
+                Iterator<T> iterator = entities.iterator();
+                while (iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    if (batch.size() == batchSize) {
+                        saveBatch(c, batch);
+                        savedCount += batch.size();
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    saveBatch(c, batch);
+                    savedCount += batch.size();
+                }
+                return savedCount;
+            }, Long::longValue);
+        } catch (SQLException e) {
+            throw new UnableToSaveException("Unable to get a connection to save with", e);
+        }
+    }
+
+    private void saveBatch(Connection connection, List<T> batch) throws UnableToSaveException {
+        try {
+            beforeSaveBatch(batch);
+            PreparedStatement savePS = prepare(connection, CrudOperation.SAVE);
+            for (T entity : batch) {
+                mapForSave(entity, savePS);
+                savePS.addBatch();
+            }
+            savePS.executeBatch();
+            try (ResultSet rs = savePS.getGeneratedKeys()) {
+                Iterator<T> saved = batch.iterator();
+                while (rs.next() && saved.hasNext()) {
+                    T entity = saved.next();
+                    setIdByAnnotation(rs.getLong(1), entity);
+                    trackLoaded(entity);
+                }
+            }
+        } catch (SQLException e) {
+            throw new UnableToSaveException("Tried to save a batch of " + batch.size() + " starting with: " + batch.get(0), e);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
     public void delete(T entity) {
         try {
-            PreparedStatement ps = connection.prepareStatement(getSQLByAnnotation(CrudOperation.DELETE_ONE, this::getDeleteSQL));
-            //ps.setLong(1, entity.getId());
-            ps.setLong(1, getIdByAnnotation(entity));
-            int affectedRecordCount = ps.executeUpdate();
-            System.out.println(affectedRecordCount);
+            execute(CrudOperation.DELETE_ONE, c -> {
+                PreparedStatement ps = prepare(c, CrudOperation.DELETE_ONE);
+                //ps.setLong(1, entity.getId());
+                ps.setLong(1, getIdByAnnotation(entity));
+                int affectedRecordCount = ps.executeUpdate();
+                invalidateCached(getIdByAnnotation(entity));
+                return affectedRecordCount;
+            }, Integer::longValue);
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataException("Unable to delete: " + entity, e);
+        } finally {
+            forgetSnapshots(Collections.singletonList(getIdByAnnotation(entity)));
         }
     }
 
     private Long getIdByAnnotation(T entity) {
-       return Arrays.stream(entity.getClass().getDeclaredFields())
-                .filter(f-> f.isAnnotationPresent(Id.class))
-                .map(f-> {
-                    f.setAccessible(true); // setting this as Id is private so we can access it
-                    Long id = null;
-                    try {
-                        id = (long)f.get(entity);
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    }
-                    return id;
-                })
-                .findFirst().orElseThrow(() -> new RuntimeException("No ID annotated field found"));
+        return EntityMetadata.of(entity.getClass()).getId(entity);
     }
     private void setIdByAnnotation(Long id, T entity) {
-        Arrays.stream(entity.getClass().getDeclaredFields())
-                .filter(f -> f.isAnnotationPresent(Id.class))
-                .forEach(f -> {
-                    f.setAccessible(true); // setting this as Id is private so we can access it
-                    try {
-                        f.set(entity, id);
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException("Unable to set Id field value");
-                    }
-                });
+        EntityMetadata.of(entity.getClass()).setId(entity, id);
+    }
+
+    @SafeVarargs
+    public final void delete(T...entities) {
+        List<Long> ids = new ArrayList<>(entities.length);
+        for (T entity : entities) ids.add(getIdByAnnotation(entity));
+        deleteAllById(ids);
+    }
+
+    /**
+     * Deletes by id with one statement execution per chunk of {@value #ID_CHUNK_SIZE} ids, each chunk bound
+     * as a single array parameter, so the same prepared statement is reused however many ids there are.
+     * Each chunk commits on its own if the connection is in auto-commit mode.
+     * @return the number of rows deleted
+     */
+    public long deleteAllById(Collection<Long> ids) {
+        return deleteAllById(ids, false);
     }
 
-    public void delete(T...entities) {
+    /**
+     * @param inOneTransaction if true, all chunks are deleted in a single transaction that is rolled back if
+     *                         any chunk fails. Applies only when the connection is in auto-commit mode;
+     *                         otherwise the deletes already join the caller's transaction.
+     * @see #deleteAllById(Collection)
+     */
+    public long deleteAllById(Collection<Long> ids, boolean inOneTransaction) {
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) return 0;
         try {
-            Statement stmt = connection.createStatement();
-            String ids = Arrays.stream(entities).map(e-> getIdByAnnotation(e)).map(String::valueOf).collect(joining(","));
-            int affectedRecordsCount = stmt.executeUpdate(getSQLByAnnotation(CrudOperation.DELETE_MANY, this::getDeleteInSQL).replace(":ids",ids));
-            System.out.println(affectedRecordsCount);
+            return execute(CrudOperation.DELETE_MANY, c -> {
+                boolean ownTransaction = inOneTransaction && c.getAutoCommit();
+                if (ownTransaction) c.setAutoCommit(false);
+                try {
+                    long deleted = 0;
+                    PreparedStatement ps = prepare(c, CrudOperation.DELETE_MANY);
+                    for (int from = 0; from < distinctIds.size(); from += ID_CHUNK_SIZE) {
+                        List<Long> chunk = distinctIds.subList(from, Math.min(from + ID_CHUNK_SIZE, distinctIds.size()));
+                        ps.setArray(1, c.createArrayOf("BIGINT", chunk.toArray()));
+                        deleted += ps.executeUpdate();
+                    }
+                    if (ownTransaction) c.commit();
+                    return deleted;
+                } catch (SQLException e) {
+                    if (ownTransaction) c.rollback();
+                    throw e;
+                } finally {
+                    if (ownTransaction) c.setAutoCommit(true);
+                }
+            }, Long::longValue);
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataException("Unable to delete " + distinctIds.size() + " ids", e);
+        } finally {
+            EntityCache<T> cache = entityCache;
+            if (cache != null) cache.invalidateAll(distinctIds);
+            forgetSnapshots(distinctIds);
         }
     }
+
+    /**
+     * Writes the entity's changes. For an entity instance loaded by findById/findAllById (or saved or updated)
+     * through this repository, only the columns that differ from their values at that time are written; if none
+     * differ, nothing is written. Other instances, including other copies of the same row, have every
+     * {@link #getUpdatableColumns() updatable column} written. Changes made to the row by other writers since
+     * the instance was loaded are only overwritten in the columns the caller changed.
+     */
     public void update(T entity) {
+        updateAll(List.of(entity));
+    }
+
+    /**
+     * Updates the entities in JDBC batches, grouping together entities whose changed columns are the same
+     * so that each group shares one UPDATE statement. Entities without changes are skipped.
+     */
+    public void updateAll(Collection<T> entities) {
+        List<Column<T>> columns = getUpdatableColumns();
+        Map<Integer, List<T>> byChangedColumns = new LinkedHashMap<>();
+        Map<T, Object[]> newSnapshots = new IdentityHashMap<>();
+        for (T entity : entities) {
+            if (columns.isEmpty()) {
+                byChangedColumns.computeIfAbsent(-1, k -> new ArrayList<>()).add(entity);
+                continue;
+            }
+            Object[] values = columnValues(entity, columns);
+            int changed = changedColumns(snapshotOf(entity), values);
+            if (changed == 0) continue;
+            byChangedColumns.computeIfAbsent(changed, k -> new ArrayList<>()).add(entity);
+            newSnapshots.put(entity, values);
+        }
         try {
-            PreparedStatement ps = connection.prepareStatement(getSQLByAnnotation(CrudOperation.UPDATE, this::getUpdateSQL));
-            mapForUpdate(entity, ps);
-            ps.setLong(5, getIdByAnnotation(entity));
-            ps.executeUpdate();
+            execute(CrudOperation.UPDATE, c -> {
+                long updated = 0;
+                for (Map.Entry<Integer, List<T>> group : byChangedColumns.entrySet()) {
+                    updateBatch(c, group.getKey(), group.getValue(), newSnapshots);
+                    updated += group.getValue().size();
+                }
+                return updated;
+            }, Long::longValue);
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataException("Unable to update " + entities.size() + " entities", e);
+        } finally {
+            for (T entity : entities) invalidateCached(getIdByAnnotation(entity));
+        }
+    }
+
+    private void updateBatch(Connection c, int changed, List<T> batch, Map<T, Object[]> newSnapshots) throws SQLException {
+        List<Column<T>> columns = getUpdatableColumns();
+        // changed == -1 means no snapshot to diff against, so every column is written with the mapped UPDATE
+        String partialSQL = changed == -1 ? null : updateSQLFor(columns, changed, batch.get(0).getClass());
+        PreparedStatement ps = partialSQL == null
+                ? prepare(c, CrudOperation.UPDATE)
+                : prepare(c, CrudOperation.UPDATE, partialSQL);
+        int idIndex = ps.getParameterMetaData().getParameterCount();
+        int batched = 0;
+        for (T entity : batch) {
+            if (partialSQL == null) {
+                mapForUpdate(entity, ps);
+            } else {
+                Object[] values = newSnapshots.get(entity);
+                int index = 1;
+                for (int i = 0; i < columns.size(); i++) {
+                    if ((changed & (1 << i)) != 0) ps.setObject(index++, values[i]);
+                }
+            }
+            ps.setLong(idIndex, getIdByAnnotation(entity));
+            ps.addBatch();
+            if (++batched % batchSize == 0) ps.executeBatch();
+        }
+        if (batched % batchSize != 0) ps.executeBatch();
+        for (T entity : batch) {
+            Object[] values = newSnapshots.get(entity);
+            if (values != null) recordSnapshot(entity, values);
         }
     }
 
+    /**
+     * @return an UPDATE of just the changed columns, keyed on the entity's @Id column
+     */
+    private String updateSQLFor(List<Column<T>> columns, int changed, Class<?> entityType) {
+        String idColumn = EntityMetadata.of(entityType).idColumn();
+        return updateSQLByChangedColumns.computeIfAbsent(changed, k -> {
+            StringJoiner assignments = new StringJoiner(", ");
+            for (int i = 0; i < columns.size(); i++) {
+                if ((changed & (1 << i)) != 0) assignments.add(columns.get(i).name() + "=?");
+            }
+            return "UPDATE " + getTableName() + " SET " + assignments + " WHERE " + idColumn + "=?";
+        });
+    }
 
     /**
-     *
-     * @return Should return a SQL string like:
-     * "DELETE FROM PEOPLE WHERE ID IN (:ids)"
-     * Be sure to include the '(:ids)' named parameter & call it 'ids'
+     * @return a bit per updatable column that differs from the snapshot; every column if there is no snapshot
+     */
+    private int changedColumns(Object[] snapshot, Object[] values) {
+        if (snapshot == null) return (1 << values.length) - 1;
+        int changed = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!Column.sameValue(snapshot[i], values[i])) changed |= 1 << i;
+        }
+        return changed;
+    }
+
+    private Object[] columnValues(T entity, List<Column<T>> columns) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).valueOf(entity);
+        }
+        return values;
+    }
+
+    /**
+     * Column values of the one entity instance per id that was last read or written through this repository.
+     */
+    private record Snapshot(WeakReference<Object> entity, Object[] values) {
+    }
+
+    /**
+     * @return the values recorded for this very instance, or null if none were or another instance of the row
+     * has been read or written since
+     */
+    private Object[] snapshotOf(T entity) {
+        Map<Long, Snapshot> tracked = snapshots;
+        Long id = getIdByAnnotation(entity);
+        if (tracked == null || id == null) return null;
+        Snapshot snapshot = tracked.get(id);
+        return snapshot != null && snapshot.entity().get() == entity ? snapshot.values() : null;
+    }
+
+    private void recordSnapshot(T entity, Object[] values) {
+        Map<Long, Snapshot> tracked = snapshots;
+        Long id = getIdByAnnotation(entity);
+        if (tracked != null && id != null) tracked.put(id, new Snapshot(new WeakReference<>(entity), values));
+    }
+
+    private void forgetSnapshots(Collection<Long> ids) {
+        Map<Long, Snapshot> tracked = snapshots;
+        if (tracked == null) return;
+        for (Long id : ids) {
+            if (id != null) tracked.remove(id);
+        }
+    }
+
+    /**
+     * Remembers the column values of an entity as it was read from or written to the database,
+     * so that a later update can write only what changed.
      */
+    void trackLoaded(T entity) {
+        List<Column<T>> columns = getUpdatableColumns();
+        if (snapshots == null || columns.isEmpty()) return;
+        recordSnapshot(entity, columnValues(entity, columns));
+    }
 
+    /**
+     * @param capacity how many loaded entities to remember the column values of for partial updates, least
+     *                 recently loaded first out; 0 turns dirty tracking off so every update writes every column
+     */
+    public void setSnapshotCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Snapshot capacity must not be negative: " + capacity);
+        this.snapshots = capacity == 0 ? null : Collections.synchronizedMap(new LruMap<>(capacity));
+    }
 
     abstract void mapForSave(T entity, PreparedStatement ps) throws SQLException;
     abstract void mapForUpdate(T entity, PreparedStatement ps) throws SQLException;
 
+    /**
+     * @return the columns update() may write, in a fixed order, or an empty list to always update through
+     * {@link #mapForUpdate} with the statement's last parameter bound to the id
+     */
+    List<Column<T>> getUpdatableColumns() {
+        return List.of();
+    }
+
+    String getTableName() {
+        throw new RuntimeException("Table name not defined.");
+    }
+
+    /**
+     * @return the properties records can be projected from
+     * @see #findAll(Class)
+     */
+    ProjectionCatalog getProjectionCatalog() {
+        throw new RuntimeException("Projections not defined.");
+    }
+
+    /**
+     * Called with each batch right before it is mapped by {@link #mapForSave}, so that rows the batch
+     * depends on (e.g. foreign keys) can be written first.
+     */
+    void beforeSaveBatch(List<T> batch) throws SQLException {
+    }
+
 
     public Optional<T> findById(Long id) {
-        T entity = null;
+        EntityCache<T> cache = entityCache;
+        T entity = cache == null ? null : cache.get(id);
+        if (entity != null) return Optional.of(entity);
+        long invalidationSequence = cache == null ? 0 : cache.invalidationSequence();
 
         try {
-            findByIdPS.setLong(1, id);
-            ResultSet rs = findByIdPS.executeQuery();
-            while (rs.next()) {
-                entity = extractEntityFromResultSet(rs);
-            }
+            entity = execute(CrudOperation.FIND_BY_ID, c -> {
+                T found = null;
+                String sql = getSQL(CrudOperation.FIND_BY_ID);
+                PreparedStatement findByIdPS = prepare(c, CrudOperation.FIND_BY_ID, sql);
+                findByIdPS.setLong(1, id);
+                try (ResultSet rs = findByIdPS.executeQuery()) {
+                    SQLFunction<ResultSet, T> rowMapper = rowMapperFor(sql, rs);
+                    while (rs.next()) {
+                        found = rowMapper.apply(rs);
+                        trackLoaded(found);
+                    }
+                }
+                return found;
+            }, found -> found == null ? 0 : 1);
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataException("Unable to find by id " + id, e);
         }
+        if (cache != null && entity != null) cache.put(id, entity, invalidationSequence);
         return Optional.ofNullable(entity);
     }
 
+    /**
+     * Finds many entities by id with one query per chunk of {@value #ID_CHUNK_SIZE} ids, binding each chunk
+     * as a single array parameter instead of issuing one findById() round trip per id.
+     * @return the entities found, keyed by id, in the order the ids were given. Ids that don't exist are left out.
+     */
+    public Map<Long, T> findAllById(Collection<Long> ids) {
+        Map<Long, T> found = new HashMap<>();
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        EntityCache<T> cache = entityCache;
+        List<Long> idsToQuery = distinctIds;
+        if (cache != null) {
+            idsToQuery = new ArrayList<>();
+            for (Long id : distinctIds) {
+                T cached = cache.get(id);
+                if (cached == null) idsToQuery.add(id);
+                else found.put(id, cached);
+            }
+        }
+        long invalidationSequence = cache == null ? 0 : cache.invalidationSequence();
+        if (!idsToQuery.isEmpty()) {
+            queryAllById(idsToQuery, found, cache, invalidationSequence);
+        }
+        Map<Long, T> inRequestedOrder = new LinkedHashMap<>();
+        for (Long id : distinctIds) {
+            T entity = found.get(id);
+            if (entity != null) inRequestedOrder.put(id, entity);
+        }
+        return inRequestedOrder;
+    }
+
+    /**
+     * Reads the ids that were not cached into {@code found}, reporting only the rows read as the call's row count.
+     */
+    private void queryAllById(List<Long> missingIds, Map<Long, T> found, EntityCache<T> cache, long invalidationSequence) {
+        try {
+            execute(CrudOperation.FIND_ALL_BY_ID, c -> {
+                long rowsRead = 0;
+                String sql = getSQL(CrudOperation.FIND_ALL_BY_ID);
+                PreparedStatement ps = prepare(c, CrudOperation.FIND_ALL_BY_ID, sql);
+                for (int from = 0; from < missingIds.size(); from += ID_CHUNK_SIZE) {
+                    List<Long> chunk = missingIds.subList(from, Math.min(from + ID_CHUNK_SIZE, missingIds.size()));
+                    ps.setArray(1, c.createArrayOf("BIGINT", chunk.toArray()));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        SQLFunction<ResultSet, T> rowMapper = rowMapperFor(sql, rs);
+                        while (rs.next()) {
+                            T entity = rowMapper.apply(rs);
+                            trackLoaded(entity);
+                            Long id = getIdByAnnotation(entity);
+                            found.put(id, entity);
+                            rowsRead++;
+                            if (cache != null) cache.put(id, entity, invalidationSequence);
+                        }
+                    }
+                }
+                return rowsRead;
+            }, Long::longValue);
+        } catch (SQLException e) {
+            throw new DataException("Unable to find entities by id", e);
+        }
+    }
+
     public List<T> findAll() {
         List<T> entities = new ArrayList<>();
         try {
-            PreparedStatement ps = connection.prepareStatement(getSQLByAnnotation(CrudOperation.FIND_ALL, this::getFindAllSQL));
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                entities.add(extractEntityFromResultSet(rs));
-            }
+            execute(CrudOperation.FIND_ALL, c -> {
+                PreparedStatement ps = prepare(c, CrudOperation.FIND_ALL);
+                try (ResultSet rs = ps.executeQuery()) {
+                    SQLFunction<ResultSet, T> rowMapper = rowMapperFor(getSQL(CrudOperation.FIND_ALL), rs);
+                    while (rs.next()) {
+                        entities.add(rowMapper.apply(rs));
+                    }
+                }
+                return entities;
+            }, List::size);
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataException("Unable to find all", e);
         }
         return entities;
     }
-    public long count() {
-        long count = 0;
+    /**
+     * Returns the page of entities that follows {@code afterId} in id order (keyset pagination). Unlike an
+     * OFFSET query, the database seeks straight to {@code afterId} through the primary key, so a deep page
+     * costs the same as the first one.
+     * @param afterId id of the last entity of the previous page, or null for the first page
+     * @param limit maximum number of entities in the page
+     */
+    public List<T> findPage(Long afterId, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Page limit must be positive: " + limit);
         try {
-            PreparedStatement ps = connection.prepareStatement(getSQLByAnnotation(CrudOperation.COUNT, this:: getCountSQL));
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                count = rs.getLong(1);
+            return execute(CrudOperation.FIND_PAGE, c -> {
+                List<T> page = new ArrayList<>(limit);
+                PreparedStatement ps = prepare(c, CrudOperation.FIND_PAGE);
+                ps.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    SQLFunction<ResultSet, T> rowMapper = rowMapperFor(getSQL(CrudOperation.FIND_PAGE), rs);
+                    while (rs.next()) {
+                        page.add(rowMapper.apply(rs));
+                    }
+                }
+                return page;
+            }, List::size);
+        } catch (SQLException e) {
+            throw new DataException("Unable to find page after id " + afterId, e);
+        }
+    }
+
+    /**
+     * @return all entities in id order, one {@link #findPage(Long, int) page} at a time. Each page is
+     * only fetched when the iterator reaches it, i.e. on the first hasNext() or next() after the previous
+     * page was returned; no page is fetched ahead.
+     */
+    public Iterable<List<T>> pages(int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        return () -> new Iterator<>() {
+            private List<T> next;
+            private Long afterId;
+            private boolean lastPageFetched;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !lastPageFetched) {
+                    next = findPage(afterId, pageSize);
+                    lastPageFetched = next.size() < pageSize;
+                }
+                return next != null && !next.isEmpty();
             }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                List<T> page = next;
+                next = null;
+                afterId = getIdByAnnotation(page.get(page.size() - 1));
+                return page;
+            }
+        };
+    }
+
+    /**
+     * Streams every entity, mapping rows only as the stream is consumed, so the table is never held in memory.
+     * The stream holds an open result set (and, for a pooled repository, a borrowed connection) until it is
+     * closed, so always use it in a try-with-resources block.
+     * <p>
+     * Embedded H2 only reads rows lazily when the connection URL has {@code LAZY_QUERY_EXECUTION=1};
+     * otherwise the result is buffered by H2 itself (spilling to disk past {@code MAX_MEMORY_ROWS}).
+     */
+    public Stream<T> streamAll() {
+        String sql = getSQL(CrudOperation.FIND_ALL);
+        return stream(CrudOperation.FIND_ALL, sql, lazyRowMapperFor(sql));
+    }
+
+    /**
+     * Reads only the columns a record needs instead of whole entities. Each record component names a property
+     * of this repository's {@link #getProjectionCatalog() catalog} (e.g. {@code record Name(long id, String lastName)}),
+     * and is read by position with a reader picked once for its type; joins are added only for the properties used.
+     * @return every row, projected into the record
+     */
+    public <R extends Record> List<R> findAll(Class<R> projection) {
+        Projection<R> compiled = projectionFor(projection);
+        return queryProjection(CrudOperation.FIND_ALL, compiled.select(), compiled);
+    }
+
+    /**
+     * @see #findAll(Class)
+     */
+    public <R extends Record> Optional<R> findById(Long id, Class<R> projection) {
+        Projection<R> compiled = projectionFor(projection);
+        String sql = compiled.select() + " WHERE " + getProjectionCatalog().idColumn() + " = ?";
+        return queryProjection(CrudOperation.FIND_BY_ID, sql, compiled, id).stream().findFirst();
+    }
+
+    /**
+     * Keyset page of projected rows, as in {@link #findPage(Long, int)}.
+     * @see #findAll(Class)
+     */
+    public <R extends Record> List<R> findPage(Class<R> projection, Long afterId, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        Projection<R> compiled = projectionFor(projection);
+        String idColumn = getProjectionCatalog().idColumn();
+        String sql = compiled.select() + " WHERE " + idColumn + " > ? ORDER BY " + idColumn + " LIMIT ?";
+        return queryProjection(CrudOperation.FIND_PAGE, sql, compiled, afterId == null ? Long.MIN_VALUE : afterId, limit);
+    }
+
+    /**
+     * Streams projected rows in id order, starting after {@code afterId} (or from the start if null),
+     * as in {@link #streamAll()}.
+     * @see #findAll(Class)
+     */
+    public <R extends Record> Stream<R> streamAll(Class<R> projection, Long afterId) {
+        Projection<R> compiled = projectionFor(projection);
+        String idColumn = getProjectionCatalog().idColumn();
+        String sql = compiled.select() + " WHERE " + idColumn + " > ? ORDER BY " + idColumn;
+        return stream(CrudOperation.FIND_ALL, sql, compiled::read, afterId == null ? Long.MIN_VALUE : afterId);
+    }
+
+    /**
+     * @return the entities matching the criteria, in the criteria's order (or the database's if none)
+     */
+    public List<T> find(Criteria criteria) {
+        StringBuilder sql = new StringBuilder(getSQL(CrudOperation.FIND_BY_CRITERIA));
+        List<Object> parameters = new ArrayList<>();
+        criteria.appendTo(sql, parameters, getProjectionCatalog());
+        String query = sql.toString();
+        try {
+            return execute(CrudOperation.FIND_BY_CRITERIA, c -> {
+                PreparedStatement ps = prepare(c, CrudOperation.FIND_BY_CRITERIA, query);
+                bind(ps, parameters);
+                List<T> entities = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    SQLFunction<ResultSet, T> rowMapper = rowMapperFor(query, rs);
+                    while (rs.next()) entities.add(rowMapper.apply(rs));
+                }
+                return entities;
+            }, List::size);
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new DataException("Unable to find by criteria: " + query, e);
         }
-        return count;
     }
+
+    /**
+     * @return the rows matching the criteria, projected into the record as in {@link #findAll(Class)}
+     */
+    public <R extends Record> List<R> find(Criteria criteria, Class<R> projection) {
+        ProjectionCatalog catalog = getProjectionCatalog();
+        Projection<R> compiled = projectionFor(projection);
+        StringBuilder sql = new StringBuilder(compiled.select(criteria.properties(catalog)));
+        List<Object> parameters = new ArrayList<>();
+        criteria.appendTo(sql, parameters, catalog);
+        return queryProjection(CrudOperation.FIND_BY_CRITERIA, sql.toString(), compiled, parameters.toArray());
+    }
+
+    private static void bind(PreparedStatement ps, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            ps.setObject(i + 1, parameters.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <R extends Record> Projection<R> projectionFor(Class<R> projection) {
+        return (Projection<R>) projections.computeIfAbsent(projection, type -> Projection.compile(projection, getProjectionCatalog()));
+    }
+
+    private <R extends Record> List<R> queryProjection(CrudOperation operation, String sql, Projection<R> projection, Object... parameters) {
+        try {
+            return execute(operation, c -> {
+                PreparedStatement ps = prepare(c, operation, sql);
+                bind(ps, Arrays.asList(parameters));
+                List<R> rows = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) rows.add(projection.read(rs));
+                }
+                return rows;
+            }, List::size);
+        } catch (SQLException e) {
+            throw new DataException("Unable to run projection: " + sql, e);
+        }
+    }
+
+    /**
+     * Runs the query on a dedicated forward-only, read-only statement and maps its rows lazily.
+     * Closing the stream closes the result set and statement and returns a borrowed connection, and reports
+     * the rows read and the time from opening to closing as one call of the operation.
+     */
+    <R> Stream<R> stream(CrudOperation operation, String sql, SQLFunction<ResultSet, R> rowMapper, Object... parameters) {
+        CrudOperationEvent event = new CrudOperationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Connection c = null;
+        PreparedStatement ps = null;
+        ResultSet rs;
+        try {
+            c = dataSource == null ? connection : dataSource.getConnection();
+            ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            closeStreamResources(null, ps, c);
+            record(operation, 0, System.nanoTime() - start, e, event);
+            throw new DataException("Unable to open stream for: " + sql, e);
+        }
+        long[] rowsRead = new long[1];
+        Throwable[] failure = new Throwable[1];
+        Connection streamConnection = c;
+        PreparedStatement streamStatement = ps;
+        Spliterator<R> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super R> action) {
+                try {
+                    if (!rs.next()) return false;
+                    action.accept(rowMapper.apply(rs));
+                    rowsRead[0]++;
+                    return true;
+                } catch (SQLException e) {
+                    failure[0] = e;
+                    throw new DataException("Unable to read next row for: " + sql, e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false)
+                .onClose(() -> {
+                    try {
+                        closeStreamResources(rs, streamStatement, streamConnection);
+                    } finally {
+                        record(operation, rowsRead[0], System.nanoTime() - start, failure[0], event);
+                    }
+                });
+    }
+
+    private void closeStreamResources(ResultSet rs, PreparedStatement ps, Connection c) {
+        try {
+            if (rs != null) rs.close();
+            if (ps != null) ps.close();
+        } catch (SQLException e) {
+            throw new DataException("Unable to close stream", e);
+        } finally {
+            if (dataSource != null && c != null) {
+                try {
+                    c.close();
+                } catch (SQLException e) {
+                    throw new DataException("Unable to return stream connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns on a bounded cache in front of {@link #findById} and {@link #findAllById}. The least recently used
+     * entity is evicted once {@code maxSize} is reached, and entries expire {@code ttl} after they were loaded.
+     * save, update and delete invalidate the ids they write through this repository; changes made by other
+     * writers become visible once the entry expires.
+     * <p>
+     * Cached entities are shared between callers, so treat them as read-only or call update() after changing one.
+     */
+    public void enableCache(int maxSize, Duration ttl) {
+        this.entityCache = new EntityCache<>(maxSize, ttl);
+    }
+
+    public void disableCache() {
+        this.entityCache = null;
+    }
+
+    public void clearCache() {
+        EntityCache<T> cache = entityCache;
+        if (cache != null) cache.clear();
+    }
+
+    public CacheStats getCacheStats() {
+        EntityCache<T> cache = entityCache;
+        return cache == null ? CacheStats.EMPTY : cache.stats();
+    }
+
+    private void invalidateCached(Long id) {
+        EntityCache<T> cache = entityCache;
+        if (cache != null) cache.invalidate(id);
+    }
+
+    /**
+     * @return an asynchronous facade over this repository. A single-connection repository runs one call at a time;
+     * a pooled one runs up to {@code maxConcurrency} (normally the pool size) at once.
+     * @see AsyncRepository
+     */
+    public AsyncRepository<T> async(int maxConcurrency, int maxInFlight) {
+        return new AsyncRepository<>(this, dataSource == null ? 1 : maxConcurrency, maxInFlight);
+    }
+
+    /**
+     * @return a buffer that queues saves and updates and writes them to this repository in batches
+     * once {@code maxQueued} mutations are pending or {@code maxDelay} has passed since the oldest one
+     * @see WriteBehindRepository
+     */
+    public WriteBehindRepository<T> writeBehind(int maxQueued, Duration maxDelay) {
+        return new WriteBehindRepository<>(this, maxQueued, maxDelay);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param fetchSize how many rows the driver should fetch per round trip when streaming
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) throw new IllegalArgumentException("Fetch size must not be negative: " + fetchSize);
+        this.fetchSize = fetchSize;
+    }
+
+    public long count() {
+        try {
+            return execute(CrudOperation.COUNT, c -> {
+                PreparedStatement ps = prepare(c, CrudOperation.COUNT);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            }, count -> 1);
+        } catch (SQLException e) {
+            throw new DataException("Unable to count", e);
+        }
+    }
+
+    /**
+     * Closes the statements cached by this repository. The connection (or data source) itself is left open.
+     */
+    @Override
+    public void close() {
+        if (dataSource instanceof PooledDataSource pool) pool.removeDiscardListener(discardListener);
+        synchronized (statementCaches) {
+            statementCaches.values().forEach(StatementCache::close);
+            statementCaches.clear();
+        }
+    }
+
     protected String getSaveSQL(){throw new RuntimeException("SQL not defined.");}
     protected String getUpdateSQL() {throw new RuntimeException("SQL not defined.");}
+    /**
+     * @return Should return a SQL string like:
+     * "DELETE FROM PEOPLE WHERE ID = ANY(?)"
+     * The single parameter binds to an array of ids.
+     */
     protected String getDeleteInSQL() {throw new RuntimeException("SQL not defined.");}
 
     protected String getDeleteSQL(){throw new RuntimeException("SQL not defined.");}
@@ -191,10 +1070,38 @@ abstract class CRUDRepository<T> {
 
     protected String getFindAllSQL(){throw new RuntimeException("SQL not defined.");}
 
+    /**
+     * @return Should return a SQL string like:
+     * "SELECT ... FROM PEOPLE WHERE ID > ? ORDER BY ID LIMIT ?"
+     * The first parameter binds to the last id of the previous page and the second to the page size.
+     */
+    protected String getFindPageSQL(){throw new RuntimeException("SQL not defined.");}
+
+    /**
+     * @return a SQL string that selects the ID of the row whose columns all equal the entity's content,
+     * for repositories that deduplicate on save
+     */
+    protected String getFindByContentSQL(){throw new RuntimeException("SQL not defined.");}
+
     /**
      * @return Returns a String that represents the SQL needed to retrieve one entity.
      * The SQL must contain one SQL parameter, i.e. "?", that will bind to the entity's ID.
      */
     protected String getFindByIdSQL(){return " ";}
+
+    /**
+     * @return Should return a SQL string like:
+     * "SELECT ... FROM PEOPLE WHERE ID = ANY(?)"
+     * The single parameter binds to an array of ids.
+     */
+    protected String getFindAllByIdSQL(){throw new RuntimeException("SQL not defined.");}
+
+    /**
+     * @return Should return a SQL string like:
+     * "SELECT ... FROM PEOPLE AS P LEFT OUTER JOIN ..."
+     * with no WHERE clause, and with every join of the {@link #getProjectionCatalog() projection catalog}
+     * under the same alias, so that {@link Criteria} can refer to any property.
+     */
+    protected String getCriteriaSelectSQL(){throw new RuntimeException("SQL not defined.");}
     abstract T extractEntityFromResultSet(ResultSet rs) throws SQLException;
 }
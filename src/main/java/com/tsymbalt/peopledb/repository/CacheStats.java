@@ -0,0 +1,10 @@
+package com.tsymbalt.peopledb.repository;
+
+public record CacheStats(long hits, long misses, long evictions, long expirations, int size) {
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0);
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
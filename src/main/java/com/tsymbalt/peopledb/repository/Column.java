@@ -0,0 +1,23 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * An updatable column and how to read its JDBC value from an entity.
+ */
+record Column<T>(String name, Function<T, Object> getter) {
+
+    Object valueOf(T entity) {
+        return getter.apply(entity);
+    }
+
+    /**
+     * @return whether two values of this column would be stored the same; BigDecimals compare by value, not scale
+     */
+    static boolean sameValue(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) return x.compareTo(y) == 0;
+        return Objects.equals(a, b);
+    }
+}
@@ -0,0 +1,28 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column label to index lookup for one result set shape. Only used while compiling a row mapper;
+ * the compiled mapper reads by index.
+ */
+final class ColumnLabels {
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    ColumnLabels(ResultSetMetaData metaData) throws SQLException {
+        for (int colIdx = metaData.getColumnCount(); colIdx >= 1; colIdx--) {
+            // iterate backwards so that the first of any duplicate labels wins, like ResultSet.findColumn
+            indexes.put(metaData.getColumnLabel(colIdx).toUpperCase(), colIdx);
+        }
+    }
+
+    /**
+     * @return the 1-based index of the column, or 0 if the result set has no such column
+     */
+    int indexOf(String label) {
+        return indexes.getOrDefault(label.toUpperCase(), 0);
+    }
+}
@@ -0,0 +1,151 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Conditions, ordering and a limit for {@link CRUDRepository#find(Criteria)}, over the property names of the
+ * repository's projection catalog (e.g. lastName, salary, homeRegion). Conditions are ANDed in the order added.
+ * <p>
+ * Values are always bound as parameters, never written into the SQL, so criteria with the same shape produce
+ * identical SQL text and reuse the same cached statement and H2 query plan. {@link #in} binds its values
+ * as one array, so its SQL doesn't depend on how many values there are.
+ * <pre>{@code
+ * repo.find(new Criteria().eq("lastName", "Smith").between("salary", low, high).orderByDesc("salary").limit(10));
+ * }</pre>
+ */
+public final class Criteria {
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private Integer limit;
+
+    private record Condition(String property, String operator, Object[] values) {
+    }
+
+    private record Order(String property, boolean descending) {
+    }
+
+    public Criteria eq(String property, Object value) {
+        return add(property, "= ?", requireValue(property, value));
+    }
+
+    public Criteria ne(String property, Object value) {
+        return add(property, "<> ?", requireValue(property, value));
+    }
+
+    public Criteria lt(String property, Object value) {
+        return add(property, "< ?", requireValue(property, value));
+    }
+
+    public Criteria le(String property, Object value) {
+        return add(property, "<= ?", requireValue(property, value));
+    }
+
+    public Criteria gt(String property, Object value) {
+        return add(property, "> ?", requireValue(property, value));
+    }
+
+    public Criteria ge(String property, Object value) {
+        return add(property, ">= ?", requireValue(property, value));
+    }
+
+    /**
+     * @param from inclusive
+     * @param to inclusive
+     */
+    public Criteria between(String property, Object from, Object to) {
+        return add(property, "BETWEEN ? AND ?", requireValue(property, from), requireValue(property, to));
+    }
+
+    /**
+     * @param pattern a SQL LIKE pattern, e.g. {@code "Sm%"}
+     */
+    public Criteria like(String property, String pattern) {
+        return add(property, "LIKE ?", requireValue(property, pattern));
+    }
+
+    public Criteria in(String property, Collection<?> values) {
+        Object[] array = values.stream().map(Criteria::toSQLValue).toArray();
+        return add(property, "= ANY(?)", (Object) array);
+    }
+
+    public Criteria isNull(String property) {
+        return add(property, "IS NULL");
+    }
+
+    public Criteria isNotNull(String property) {
+        return add(property, "IS NOT NULL");
+    }
+
+    public Criteria orderBy(String property) {
+        orders.add(new Order(property, false));
+        return this;
+    }
+
+    public Criteria orderByDesc(String property) {
+        orders.add(new Order(property, true));
+        return this;
+    }
+
+    public Criteria limit(int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be positive: " + limit);
+        this.limit = limit;
+        return this;
+    }
+
+    private Criteria add(String property, String operator, Object... values) {
+        Object[] sqlValues = new Object[values.length];
+        for (int i = 0; i < values.length; i++) sqlValues[i] = toSQLValue(values[i]);
+        conditions.add(new Condition(property, operator, sqlValues));
+        return this;
+    }
+
+    private static Object requireValue(String property, Object value) {
+        if (value == null) throw new IllegalArgumentException("Null value for " + property + "; use isNull() instead");
+        return value;
+    }
+
+    /**
+     * Converts values to what the columns store: enums by name, ZonedDateTimes as UTC timestamps.
+     */
+    private static Object toSQLValue(Object value) {
+        if (value instanceof Enum<?> e) return e.name();
+        if (value instanceof ZonedDateTime z) return Timestamp.valueOf(z.withZoneSameInstant(ZoneId.of("+0")).toLocalDateTime());
+        return value;
+    }
+
+    /**
+     * @return the catalog properties these criteria refer to, so their joins can be added
+     */
+    List<ProjectionCatalog.Property> properties(ProjectionCatalog catalog) {
+        List<ProjectionCatalog.Property> used = new ArrayList<>();
+        for (Condition condition : conditions) used.add(catalog.property(condition.property()));
+        for (Order order : orders) used.add(catalog.property(order.property()));
+        return used;
+    }
+
+    /**
+     * Appends the WHERE, ORDER BY and LIMIT clauses to the query and their values to the parameters.
+     */
+    void appendTo(StringBuilder sql, List<Object> parameters, ProjectionCatalog catalog) {
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = conditions.get(i);
+            sql.append(i == 0 ? " WHERE " : " AND ")
+                    .append(catalog.property(condition.property()).column()).append(' ').append(condition.operator());
+            parameters.addAll(List.of(condition.values()));
+        }
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            sql.append(i == 0 ? " ORDER BY " : ", ").append(catalog.property(order.property()).column());
+            if (order.descending()) sql.append(" DESC");
+        }
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            parameters.add(limit);
+        }
+    }
+}
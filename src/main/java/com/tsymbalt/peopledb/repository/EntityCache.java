@@ -0,0 +1,76 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Bounded, time-limited cache of entities by id with least-recently-used eviction.
+ * <p>
+ * To keep a read that raced with a write from caching the row it read before the write, readers take
+ * {@link #invalidationSequence()} before querying and cache the result with {@link #put(Long, Object, long)},
+ * which drops it if anything was invalidated in the meantime.
+ */
+class EntityCache<T> {
+    private record Entry<T>(T value, long expiresAtNanos) {
+    }
+
+    private final LruMap<Long, Entry<T>> entries;
+    private final long ttlNanos;
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    EntityCache(int maxSize, Duration ttl) {
+        this.entries = new LruMap<>(maxSize, (id, entry) -> evictions++);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    synchronized T get(Long id) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos() > 0) {
+            entries.remove(id);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    synchronized long invalidationSequence() {
+        return invalidations;
+    }
+
+    /**
+     * Caches the entity unless something was invalidated after {@code invalidationSequence} was taken.
+     */
+    synchronized void put(Long id, T entity, long invalidationSequence) {
+        if (invalidationSequence != invalidations) return;
+        entries.put(id, new Entry<>(entity, System.nanoTime() + ttlNanos));
+    }
+
+    synchronized void invalidate(Long id) {
+        invalidations++;
+        entries.remove(id);
+    }
+
+    synchronized void invalidateAll(Collection<Long> ids) {
+        invalidations++;
+        ids.forEach(entries::remove);
+    }
+
+    synchronized void clear() {
+        invalidations++;
+        entries.clear();
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, expirations, entries.size());
+    }
+}
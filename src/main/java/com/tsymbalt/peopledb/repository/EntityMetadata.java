@@ -0,0 +1,118 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.annotation.Id;
+import com.tsymbalt.peopledb.exception.DataException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Per-entity-class metadata, resolved once per class and cached for the life of the class.
+ * The @Id is read and written through the {@link IdAccessor} generated at compile time when there is one.
+ * Otherwise the @Id field is looked up reflectively the first time only, and after that it is accessed
+ * through method handles, which also works for final fields such as {@code Address.id}.
+ */
+final class EntityMetadata {
+    private static final ClassValue<EntityMetadata> REGISTRY = new ClassValue<>() {
+        @Override
+        protected EntityMetadata computeValue(Class<?> type) {
+            return new EntityMetadata(type);
+        }
+    };
+
+    private final Class<?> entityType;
+    private final IdAccessor<Object> idAccessor;
+
+    @SuppressWarnings("unchecked")
+    private EntityMetadata(Class<?> entityType) {
+        this.entityType = entityType;
+        IdAccessor<?> generated = GeneratedMetadata.idAccessorFor(entityType);
+        this.idAccessor = generated != null ? (IdAccessor<Object>) generated : new MethodHandleIdAccessor(entityType);
+    }
+
+    static EntityMetadata of(Class<?> entityType) {
+        return REGISTRY.get(entityType);
+    }
+
+    Class<?> entityType() {
+        return entityType;
+    }
+
+    Long getId(Object entity) {
+        return idAccessor.getId(entity);
+    }
+
+    void setId(Object entity, Long id) {
+        idAccessor.setId(entity, id);
+    }
+
+    /**
+     * @return the column named by the @Id field
+     */
+    String idColumn() {
+        return idAccessor.idColumn();
+    }
+
+    private static final class MethodHandleIdAccessor implements IdAccessor<Object> {
+        private final Class<Object> entityType;
+        private final MethodHandle idGetter;
+        private final MethodHandle idSetter;
+        private final String idColumn;
+
+        @SuppressWarnings("unchecked")
+        private MethodHandleIdAccessor(Class<?> entityType) {
+            this.entityType = (Class<Object>) entityType;
+            Field idField = findIdField(entityType);
+            this.idColumn = idField.getAnnotation(Id.class).column();
+            try {
+                idField.setAccessible(true); // setting this as Id is private so we can access it
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                idGetter = lookup.unreflectGetter(idField).asType(methodType(Object.class, Object.class));
+                idSetter = lookup.unreflectSetter(idField).asType(methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new DataException("Unable to access @Id field of " + entityType.getName(), e);
+            }
+        }
+
+        private static Field findIdField(Class<?> entityType) {
+            for (Class<?> type = entityType; type != null && type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Id.class)) return field;
+                }
+            }
+            throw new DataException("No ID annotated field found in " + entityType.getName());
+        }
+
+        @Override
+        public Class<Object> entityType() {
+            return entityType;
+        }
+
+        @Override
+        public Long getId(Object entity) {
+            try {
+                Object id = idGetter.invokeExact(entity);
+                return (Long) id;
+            } catch (Throwable e) {
+                throw new DataException("Unable to get Id field value of " + entity, e);
+            }
+        }
+
+        @Override
+        public void setId(Object entity, Long id) {
+            try {
+                idSetter.invokeExact(entity, (Object) id);
+            } catch (Throwable e) {
+                throw new DataException("Unable to set Id field value of " + entity, e);
+            }
+        }
+
+        @Override
+        public String idColumn() {
+            return idColumn;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.tsymbalt.peopledb.repository;
+
+/**
+ * How a repository loads the entities a row refers to, such as a person's addresses.
+ */
+public enum FetchPlan {
+    /** Joined into the same query and loaded with the row. */
+    EAGER,
+    /** Not joined; each is loaded with its own query the first time it is accessed. */
+    LAZY,
+    /** Neither joined nor loaded. */
+    NONE
+}
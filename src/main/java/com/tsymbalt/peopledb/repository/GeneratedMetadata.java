@@ -0,0 +1,44 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Index of the {@link SqlRegistry} and {@link IdAccessor} classes generated at compile time, loaded once.
+ * When a class has no generated metadata (e.g. the annotation processor didn't run) callers fall back to
+ * reading the annotations reflectively.
+ */
+final class GeneratedMetadata {
+    private static final Map<Class<?>, Map<CrudOperation, String>> STATEMENTS = new HashMap<>();
+    private static final Map<Class<?>, IdAccessor<?>> ID_ACCESSORS = new HashMap<>();
+
+    static {
+        ClassLoader classLoader = GeneratedMetadata.class.getClassLoader();
+        for (SqlRegistry registry : ServiceLoader.load(SqlRegistry.class, classLoader)) {
+            STATEMENTS.put(registry.repositoryType(), Map.copyOf(registry.statements()));
+        }
+        for (IdAccessor<?> accessor : ServiceLoader.load(IdAccessor.class, classLoader)) {
+            ID_ACCESSORS.put(accessor.entityType(), accessor);
+        }
+    }
+
+    private GeneratedMetadata() {
+    }
+
+    /**
+     * @return the statements declared with @SQL on this exact repository class, or null if none were generated
+     */
+    static Map<CrudOperation, String> statementsFor(Class<?> repositoryType) {
+        return STATEMENTS.get(repositoryType);
+    }
+
+    /**
+     * @return the generated id accessor for this exact entity class, or null if none was generated
+     */
+    static IdAccessor<?> idAccessorFor(Class<?> entityType) {
+        return ID_ACCESSORS.get(entityType);
+    }
+}
@@ -0,0 +1,17 @@
+package com.tsymbalt.peopledb.repository;
+
+/**
+ * Reads and writes the @Id of one entity class, generated at compile time by the repository annotation processor.
+ */
+public interface IdAccessor<T> {
+    Class<T> entityType();
+
+    Long getId(T entity);
+
+    void setId(T entity, Long id);
+
+    /**
+     * @return the column the id is stored in, from {@link com.tsymbalt.peopledb.annotation.Id#column()}
+     */
+    String idColumn();
+}
@@ -0,0 +1,40 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Access-ordered map that evicts its least recently used entry once it grows past {@code capacity}.
+ * Not thread safe; callers synchronize if they share it.
+ */
+class LruMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final BiConsumer<K, V> evictionListener;
+
+    LruMap(int capacity) {
+        this(capacity, (k, v) -> {});
+    }
+
+    LruMap(int capacity, BiConsumer<K, V> evictionListener) {
+        super(16, 0.75f, true);
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.evictionListener = evictionListener;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        if (size() > capacity) {
+            evictionListener.accept(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+        return false;
+    }
+}
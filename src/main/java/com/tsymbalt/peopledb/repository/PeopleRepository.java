@@ -1,50 +1,82 @@
 package com.tsymbalt.peopledb.repository;
 
 import com.tsymbalt.peopledb.annotation.SQL;
+import com.tsymbalt.peopledb.exception.DataException;
 import com.tsymbalt.peopledb.model.Address;
 import com.tsymbalt.peopledb.model.CrudOperation;
 import com.tsymbalt.peopledb.model.Person;
 import com.tsymbalt.peopledb.model.Region;
+import com.tsymbalt.peopledb.model.SalaryAggregate;
 
+import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class PeopleRepository extends CRUDRepository<Person> {
 
     private AddressRepository addressRepository = null;
+    private volatile FetchPlan addressFetchPlan = FetchPlan.EAGER;
+    private final Map<List<SalaryGrouping>, String> aggregateSQLByGroupings = new ConcurrentHashMap<>();
     public static final String INSERT_PERSON_SQL = """
             INSERT INTO PEOPLE 
             (FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, HOME_ADDRESS, BIZ_ADDRESS ) VALUES(?, ?, ?, ?, ?, ?, ?)""";
 
-    public static final String FIND_BY_ID_SQL = """
+    private static final String SELECT_PERSON_WITH_ADDRESSES_SQL = """
     SELECT 
-    P.ID, P.FIRST_NAME, P.LAST_NAME, P.DOB, P.SALARY, P.HOME_ADDRESS,
-    HOME.ID AS HOME_ID, HOME.STREET_ADDRESS AS HOME_STREET_ADDRESS, HOME.ADDRESS2 AS HOME_STREET_ADDRESS, HOME.CITY AS HOME_STREET_ADDRESS, HOME.STATE AS HOME_STREET_ADDRESS, HOME.POSTCODE AS HOME_STREET_ADDRESS, HOME.COUNTY AS HOME_STREET_ADDRESS, HOME.REGION AS HOME_STREET_ADDRESS, HOME.COUNTRY AS HOME_STREET_ADDRESS,
-    BIZ.ID AS BIZ_ID, BIZ.STREET_ADDRESS AS BIZ_STREET_ADDRESS, BIZ.ADDRESS2 AS BIZ_STREET_ADDRESS, BIZ.CITY AS BIZ_STREET_ADDRESS, BIZ.STATE AS BIZ_STREET_ADDRESS, BIZ.POSTCODE AS BIZ_STREET_ADDRESS, BIZ.COUNTY AS BIZ_STREET_ADDRESS, BIZ.REGION AS BIZ_STREET_ADDRESS, BIZ.COUNTRY AS BIZ_STREET_ADDRESS,
+    P.ID, P.FIRST_NAME, P.LAST_NAME, P.DOB, P.SALARY, P.EMAIL, P.HOME_ADDRESS, P.BIZ_ADDRESS,
+    HOME.ID AS HOME_ID, HOME.STREET_ADDRESS AS HOME_STREET_ADDRESS, HOME.ADDRESS2 AS HOME_ADDRESS2, HOME.CITY AS HOME_CITY, HOME.STATE AS HOME_STATE, HOME.POSTCODE AS HOME_POSTCODE, HOME.COUNTY AS HOME_COUNTY, HOME.REGION AS HOME_REGION, HOME.COUNTRY AS HOME_COUNTRY,
+    BIZ.ID AS BIZ_ID, BIZ.STREET_ADDRESS AS BIZ_STREET_ADDRESS, BIZ.ADDRESS2 AS BIZ_ADDRESS2, BIZ.CITY AS BIZ_CITY, BIZ.STATE AS BIZ_STATE, BIZ.POSTCODE AS BIZ_POSTCODE, BIZ.COUNTY AS BIZ_COUNTY, BIZ.REGION AS BIZ_REGION, BIZ.COUNTRY AS BIZ_COUNTRY
     FROM PEOPLE AS P 
     LEFT OUTER JOIN ADDRESSES AS HOME ON P.HOME_ADDRESS = HOME.ID
     LEFT OUTER JOIN ADDRESSES AS BIZ ON P.BIZ_ADDRESS = BIZ.ID
-    WHERE P.ID=?""";
+    """;
+    private static final String SELECT_PERSON_WITH_ADDRESS_IDS_SQL = """
+    SELECT P.ID, P.FIRST_NAME, P.LAST_NAME, P.DOB, P.SALARY, P.EMAIL, P.HOME_ADDRESS, P.BIZ_ADDRESS
+    FROM PEOPLE AS P
+    """;
+    private static final String SELECT_PERSON_SQL = """
+    SELECT P.ID, P.FIRST_NAME, P.LAST_NAME, P.DOB, P.SALARY, P.EMAIL
+    FROM PEOPLE AS P
+    """;
+    public static final String FIND_BY_ID_SQL = SELECT_PERSON_WITH_ADDRESSES_SQL + "WHERE P.ID=?";
+    public static final String FIND_ALL_BY_ID_SQL = SELECT_PERSON_WITH_ADDRESSES_SQL + "WHERE P.ID = ANY(?)";
+    public static final String FIND_BY_ID_LAZY_SQL = SELECT_PERSON_WITH_ADDRESS_IDS_SQL + "WHERE P.ID=?";
+    public static final String FIND_ALL_BY_ID_LAZY_SQL = SELECT_PERSON_WITH_ADDRESS_IDS_SQL + "WHERE P.ID = ANY(?)";
+    public static final String FIND_BY_ID_WITHOUT_ADDRESSES_SQL = SELECT_PERSON_SQL + "WHERE P.ID=?";
+    public static final String FIND_ALL_BY_ID_WITHOUT_ADDRESSES_SQL = SELECT_PERSON_SQL + "WHERE P.ID = ANY(?)";
     public static final String FIND_ALL_SQL = "SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY FROM PEOPLE";
+    public static final String FIND_PAGE_SQL = "SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY FROM PEOPLE WHERE ID > ? ORDER BY ID LIMIT ?";
     public static final String SELECT_COUNT_SQL = "SELECT COUNT(*) FROM PEOPLE";
     public static final String DELETE_SQL = "DELETE FROM PEOPLE WHERE ID=?";
-    public static final String DELETE_IN_SQL = "DELETE FROM PEOPLE WHERE ID IN (:ids)";
-    public static final String UPDATE_SQL = "UPDATE PEOPLE SET FIRST_NAME=?, LAST_NAME=?, DOB=? WHERE ID=?";
-
-    private Map<String, Integer> aliasColIdxMapCashe = new HashMap<>();
+    public static final String DELETE_IN_SQL = "DELETE FROM PEOPLE WHERE ID = ANY(?)";
+    public static final String UPDATE_SQL = "UPDATE PEOPLE SET FIRST_NAME=?, LAST_NAME=?, DOB=?, SALARY=? WHERE ID=?";
+    private static final ProjectionCatalog PROJECTIONS = projectionCatalog();
+    private static final List<Column<Person>> UPDATABLE_COLUMNS = List.of(
+            new Column<>("FIRST_NAME", Person::getFirstName),
+            new Column<>("LAST_NAME", Person::getLastName),
+            new Column<>("DOB", p -> p.getDob() == null ? null : convertDobToTimestamp(p.getDob())),
+            new Column<>("SALARY", Person::getSalary));
 
     public PeopleRepository(Connection connection) {
         super(connection);
         addressRepository = new AddressRepository(connection);
     }
+
+    /**
+     * Creates a repository that can be shared across threads; see {@link CRUDRepository#CRUDRepository(DataSource)}.
+     * Addresses are saved on the same borrowed connection as the person they belong to.
+     */
+    public PeopleRepository(DataSource dataSource) {
+        super(dataSource);
+        addressRepository = new AddressRepository(dataSource);
+    }
     @Override
-    @SQL(value = INSERT_PERSON_SQL, operationType = CrudOperation.UPDATE)
+    @SQL(value = INSERT_PERSON_SQL, operationType = CrudOperation.SAVE)
     void mapForSave(Person entity, PreparedStatement ps) throws SQLException {
         Address savedAddress = null;
 
@@ -54,13 +86,71 @@ public class PeopleRepository extends CRUDRepository<Person> {
         ps.setBigDecimal(4, entity.getSalary());
         ps.setString(5, entity.getEmail());
         associateAddressWithPerson(ps, entity.getHomeAddress(), 6);
-        associateAddressWithPerson(ps, entity.getHomeAddress(), 7);
+        associateAddressWithPerson(ps, entity.getBusinessAddress(), 7);
+    }
+
+    @Override
+    void beforeSaveBatch(List<Person> batch) {
+        // an address object may be shared by several people (e.g. coworkers), so collect by identity
+        Set<Address> unsavedAddresses = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Person person : batch) {
+            person.getHomeAddress().filter(a -> a.id() == null).ifPresent(unsavedAddresses::add);
+            person.getBusinessAddress().filter(a -> a.id() == null).ifPresent(unsavedAddresses::add);
+        }
+        if (!unsavedAddresses.isEmpty()) {
+            addressRepository.saveAll(unsavedAddresses);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        addressRepository.close();
+    }
+
+    /**
+     * Forgets the address ids remembered for deduplication. Call after rolling back a transaction that saved
+     * people with new addresses, so that the rolled-back address ids are not handed out again.
+     * @see AddressRepository#clearDedupeCache()
+     */
+    public void clearAddressDedupeCache() {
+        addressRepository.clearDedupeCache();
+    }
+
+    public FetchPlan getAddressFetchPlan() {
+        return addressFetchPlan;
+    }
+
+    /**
+     * Chooses how findById and findAllById load a person's addresses. EAGER (the default) joins them in;
+     * LAZY skips the joins and loads each address through {@link AddressRepository#findById} the first time
+     * {@link Person#getHomeAddress()} or {@link Person#getBusinessAddress()} is called, one query per address;
+     * NONE leaves them empty, for callers that only need the person's own columns.
+     * <p>
+     * Changing the plan clears the {@link #enableCache entity cache}, so people loaded under the old plan are
+     * not served under the new one.
+     */
+    public void setAddressFetchPlan(FetchPlan addressFetchPlan) {
+        FetchPlan previous = this.addressFetchPlan;
+        this.addressFetchPlan = Objects.requireNonNull(addressFetchPlan);
+        if (previous != addressFetchPlan) clearCache();
+    }
+
+    @Override
+    String getSQL(CrudOperation operationType) {
+        FetchPlan plan = addressFetchPlan;
+        if (plan == FetchPlan.EAGER) return super.getSQL(operationType);
+        return switch (operationType) {
+            case FIND_BY_ID -> plan == FetchPlan.LAZY ? FIND_BY_ID_LAZY_SQL : FIND_BY_ID_WITHOUT_ADDRESSES_SQL;
+            case FIND_ALL_BY_ID -> plan == FetchPlan.LAZY ? FIND_ALL_BY_ID_LAZY_SQL : FIND_ALL_BY_ID_WITHOUT_ADDRESSES_SQL;
+            default -> super.getSQL(operationType);
+        };
     }
 
     private void associateAddressWithPerson(PreparedStatement ps, Optional<Address> address, int parameterIndex) throws SQLException {
         Address savedAddress;
         if (address.isPresent()) {
-            savedAddress = addressRepository.save(address.get());
+            savedAddress = address.get().id() == null ? addressRepository.save(address.get()) : address.get();
             ps.setLong(parameterIndex, savedAddress.id());
         } else {
             ps.setObject(parameterIndex, null);
@@ -68,7 +158,7 @@ public class PeopleRepository extends CRUDRepository<Person> {
     }
 
     @Override
-    @SQL(value = UPDATE_SQL, operationType = CrudOperation.SAVE)
+    @SQL(value = UPDATE_SQL, operationType = CrudOperation.UPDATE)
     void mapForUpdate(Person entity, PreparedStatement ps) throws SQLException {
         ps.setString(1, entity.getFirstName());
         ps.setString(2, entity.getLastName());
@@ -76,6 +166,113 @@ public class PeopleRepository extends CRUDRepository<Person> {
         ps.setBigDecimal(4, entity.getSalary());
     }
 
+    @Override
+    List<Column<Person>> getUpdatableColumns() {
+        return UPDATABLE_COLUMNS;
+    }
+
+    @Override
+    String getTableName() {
+        return "PEOPLE";
+    }
+
+    @Override
+    ProjectionCatalog getProjectionCatalog() {
+        return PROJECTIONS;
+    }
+
+    /**
+     * Person properties plus {@code home*} and {@code business*} properties for each address column,
+     * e.g. homeCity or businessRegion.
+     */
+    private static ProjectionCatalog projectionCatalog() {
+        Map<String, ProjectionCatalog.Property> properties = new LinkedHashMap<>();
+        properties.put("id", new ProjectionCatalog.Property("P.ID", null));
+        properties.put("firstName", new ProjectionCatalog.Property("P.FIRST_NAME", null));
+        properties.put("lastName", new ProjectionCatalog.Property("P.LAST_NAME", null));
+        properties.put("dob", new ProjectionCatalog.Property("P.DOB", null));
+        properties.put("salary", new ProjectionCatalog.Property("P.SALARY", null));
+        properties.put("email", new ProjectionCatalog.Property("P.EMAIL", null));
+        properties.put("homeAddressId", new ProjectionCatalog.Property("P.HOME_ADDRESS", null));
+        properties.put("businessAddressId", new ProjectionCatalog.Property("P.BIZ_ADDRESS", null));
+        addAddressProperties(properties, "home", "HOME", "LEFT OUTER JOIN ADDRESSES AS HOME ON P.HOME_ADDRESS = HOME.ID");
+        addAddressProperties(properties, "business", "BIZ", "LEFT OUTER JOIN ADDRESSES AS BIZ ON P.BIZ_ADDRESS = BIZ.ID");
+        return new ProjectionCatalog("PEOPLE AS P", "P.ID", properties);
+    }
+
+    /**
+     * Computes salary statistics per group in the database (one GROUP BY query) instead of loading people,
+     * e.g. {@code aggregateSalaries(HOME_REGION, BIRTH_DECADE)}. Address tables are joined only for the
+     * groupings that need them. With no groupings, returns a single row for everyone.
+     * @return one row per group, ordered by the group key
+     */
+    public List<SalaryAggregate> aggregateSalaries(SalaryGrouping... groupings) {
+        String sql = aggregateSQLByGroupings.computeIfAbsent(List.of(groupings), this::aggregateSQLFor);
+        try {
+            return execute(CrudOperation.AGGREGATE, c -> {
+                PreparedStatement ps = prepare(c, CrudOperation.AGGREGATE, sql);
+                List<SalaryAggregate> aggregates = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    int n = groupings.length;
+                    while (rs.next()) {
+                        List<Object> groupKey = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            groupKey.add(readGroupKey(rs, i + 1, groupings[i]));
+                        }
+                        aggregates.add(new SalaryAggregate(Collections.unmodifiableList(groupKey), rs.getLong(n + 1),
+                                rs.getBigDecimal(n + 2), rs.getBigDecimal(n + 3), rs.getBigDecimal(n + 4), rs.getBigDecimal(n + 5)));
+                    }
+                }
+                return aggregates;
+            }, List::size);
+        } catch (SQLException e) {
+            throw new DataException("Unable to aggregate salaries by " + Arrays.toString(groupings), e);
+        }
+    }
+
+    private String aggregateSQLFor(List<SalaryGrouping> groupings) {
+        List<ProjectionCatalog.Property> joined = new ArrayList<>();
+        StringJoiner keys = new StringJoiner(", ");
+        for (SalaryGrouping grouping : groupings) {
+            if (grouping.property() != null) joined.add(PROJECTIONS.property(grouping.property()));
+            keys.add(grouping.expression(PROJECTIONS));
+        }
+        String select = "SELECT " + (groupings.isEmpty() ? "" : keys + ", ")
+                + "COUNT(*), SUM(P.SALARY), AVG(P.SALARY), MIN(P.SALARY), MAX(P.SALARY) FROM " + PROJECTIONS.fromFor(joined);
+        return groupings.isEmpty() ? select : select + " GROUP BY " + keys + " ORDER BY " + keys;
+    }
+
+    private static Object readGroupKey(ResultSet rs, int index, SalaryGrouping grouping) throws SQLException {
+        return switch (grouping) {
+            case HOME_REGION, BUSINESS_REGION -> {
+                String region = rs.getString(index);
+                yield region == null ? null : Region.valueOf(region.toUpperCase());
+            }
+            case BIRTH_YEAR, BIRTH_DECADE -> {
+                int year = rs.getInt(index);
+                yield rs.wasNull() ? null : year;
+            }
+        };
+    }
+
+    private static void addAddressProperties(Map<String, ProjectionCatalog.Property> properties, String prefix, String alias, String join) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("StreetAddress", "STREET_ADDRESS");
+        columns.put("Address2", "ADDRESS2");
+        columns.put("City", "CITY");
+        columns.put("State", "STATE");
+        columns.put("Postcode", "POSTCODE");
+        columns.put("County", "COUNTY");
+        columns.put("Region", "REGION");
+        columns.put("Country", "COUNTRY");
+        columns.forEach((name, column) -> properties.put(prefix + name, new ProjectionCatalog.Property(alias + "." + column, join)));
+    }
+
+    @Override
+    protected String getCriteriaSelectSQL() {
+        return SELECT_PERSON_WITH_ADDRESSES_SQL;
+    }
+
     @Override
     protected String getFindByIdSQL() {
         return FIND_BY_ID_SQL;
@@ -83,64 +280,61 @@ public class PeopleRepository extends CRUDRepository<Person> {
 
     @Override
     @SQL(value = FIND_BY_ID_SQL, operationType = CrudOperation.FIND_BY_ID)
+    @SQL(value = FIND_ALL_BY_ID_SQL, operationType = CrudOperation.FIND_ALL_BY_ID)
     @SQL(value = FIND_ALL_SQL, operationType = CrudOperation.FIND_ALL)
+    @SQL(value = FIND_PAGE_SQL, operationType = CrudOperation.FIND_PAGE)
     @SQL(value = SELECT_COUNT_SQL, operationType = CrudOperation.COUNT)
     @SQL(value = DELETE_SQL, operationType = CrudOperation.DELETE_ONE)
+    @SQL(value = DELETE_IN_SQL, operationType = CrudOperation.DELETE_MANY)
     Person extractEntityFromResultSet(ResultSet rs) throws SQLException {
-        long personId = rs.getLong("ID");
-        String firstName = rs.getString("FIRST_NAME");
-        String lastName = rs.getString("LAST_NAME");
-        ZonedDateTime dob = ZonedDateTime.of(rs.getTimestamp("DOB").toLocalDateTime(), ZoneId.of("+0"));
-        BigDecimal salary = rs.getBigDecimal("SALARY");
-        long homeAddressId = rs.getLong("HOME_ADDRESS");
-
-        Address homeAddress = extractAddress(rs, "HOME_");
-        Address bizAddress = extractAddress(rs, "BIZ_");
-
-        Person person = new Person(personId, firstName, lastName, dob, salary);
-        person.setHomeAddress(homeAddress);
-        person.setBusinessAddress(bizAddress);
-        return person;
-    }
-
-    private Address extractAddress(ResultSet rs, String aliasPrefix) throws SQLException {
-        Long addrId = getValueByAlias(aliasPrefix + "ID", rs, Long.class);
-        if (addrId == null) return null;
-        rs.getMetaData().getColumnLabel(1);
-        String streetAddress = getValueByAlias(aliasPrefix + "STREET_ADDRESS", rs, String.class);
-        String address2 =getValueByAlias(aliasPrefix + "ADDRESS2", rs, String.class);
-        String city = getValueByAlias(aliasPrefix + "CITY", rs, String.class);
-        String state = getValueByAlias(aliasPrefix + "STATE", rs, String.class);
-        String postcode = getValueByAlias(aliasPrefix + "POSTCODE", rs, String.class);
-        String county = getValueByAlias(aliasPrefix + "COUNTY", rs, String.class);
-        Region region = Region.valueOf(getValueByAlias(aliasPrefix + "REGION", rs, String.class).toUpperCase());
-        String country = getValueByAlias(aliasPrefix + "COUNTRY", rs, String.class);
-        Address address = new Address(addrId, streetAddress, address2, city, state, postcode, country, county, region);
-        return address;
-    }
-
-    private <T> T getValueByAlias(String alias, ResultSet rs, Class<T> clazz) throws SQLException {
-        int columnCount = rs.getMetaData().getColumnCount();
-        int foundIdx = getIndexForAlias(alias, rs, columnCount);
-        return foundIdx == 0 ? null : (T) rs.getObject(foundIdx);
-
-    }
-
-    private int getIndexForAlias(String alias, ResultSet rs, int columnCount) throws SQLException {
-        Integer foundIdx = aliasColIdxMapCashe.getOrDefault(alias, 0);
-        if (foundIdx == 0) {
-            for (int colIdx = 1; colIdx <= columnCount; colIdx++) {
-                if (alias.equals(rs.getMetaData().getColumnLabel(colIdx))) {
-                    foundIdx = colIdx;
-                    aliasColIdxMapCashe.put(alias, foundIdx);
-                    break;
-                }
-            }
-        }
-        return foundIdx;
+        return compileRowMapper(rs.getMetaData()).apply(rs);
+    }
+
+    @Override
+    SQLFunction<ResultSet, Person> compileRowMapper(ResultSetMetaData metaData) throws SQLException {
+        ColumnLabels labels = new ColumnLabels(metaData);
+        AddressRepository.AddressColumns home = AddressRepository.AddressColumns.resolve(labels, "HOME_");
+        AddressRepository.AddressColumns biz = AddressRepository.AddressColumns.resolve(labels, "BIZ_");
+        // without the joined address columns, the address ids (if selected) are loaded lazily
+        PersonColumns columns = new PersonColumns(labels.indexOf("ID"), labels.indexOf("FIRST_NAME"),
+                labels.indexOf("LAST_NAME"), labels.indexOf("DOB"), labels.indexOf("SALARY"), labels.indexOf("EMAIL"),
+                home, biz,
+                home == null ? labels.indexOf("HOME_ADDRESS") : 0,
+                biz == null ? labels.indexOf("BIZ_ADDRESS") : 0);
+        return rs -> columns.read(rs, addressRepository);
     }
 
+    /**
+     * Column indexes of a person (and optionally their addresses, or just the addresses' ids) within a result set,
+     * resolved once per query.
+     */
+    private record PersonColumns(int id, int firstName, int lastName, int dob, int salary, int email,
+                                 AddressRepository.AddressColumns home, AddressRepository.AddressColumns biz,
+                                 int lazyHomeId, int lazyBizId) {
+
+        Person read(ResultSet rs, AddressRepository addressRepository) throws SQLException {
+            long personId = rs.getLong(id);
+            String firstName = rs.getString(this.firstName);
+            String lastName = rs.getString(this.lastName);
+            Timestamp dobTimestamp = rs.getTimestamp(this.dob);
+            ZonedDateTime dob = dobTimestamp == null ? null : ZonedDateTime.of(dobTimestamp.toLocalDateTime(), ZoneId.of("+0"));
+            BigDecimal salary = rs.getBigDecimal(this.salary);
 
+            Person person = new Person(personId, firstName, lastName, dob, salary);
+            if (email != 0) person.setEmail(rs.getString(email));
+            if (home != null) person.setHomeAddress(home.read(rs));
+            if (biz != null) person.setBusinessAddress(biz.read(rs));
+            if (lazyHomeId != 0) {
+                long homeId = rs.getLong(lazyHomeId);
+                if (!rs.wasNull()) person.setHomeAddressLoader(() -> addressRepository.findById(homeId));
+            }
+            if (lazyBizId != 0) {
+                long bizId = rs.getLong(lazyBizId);
+                if (!rs.wasNull()) person.setBusinessAddressLoader(() -> addressRepository.findById(bizId));
+            }
+            return person;
+        }
+    }
 
     /*public void delete(Person...people) { // Person[] people
         for (Person person : people) {
@@ -150,7 +344,7 @@ public class PeopleRepository extends CRUDRepository<Person> {
      */
 
 
-    private Timestamp convertDobToTimestamp(ZonedDateTime dob) {
+    private static Timestamp convertDobToTimestamp(ZonedDateTime dob) {
         return Timestamp.valueOf(dob.withZoneSameInstant(ZoneId.of("+0")).toLocalDateTime());
     }
 }
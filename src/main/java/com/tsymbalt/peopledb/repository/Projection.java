@@ -0,0 +1,145 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.exception.DataException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A record type compiled against a repository's {@link ProjectionCatalog}: the SELECT list holds exactly one
+ * column per record component, in component order, so each component is read by its position with a reader
+ * chosen once for its type.
+ */
+final class Projection<R extends Record> {
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) parameterTypes[i] = components[i].getType();
+            try {
+                MethodHandle constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                        .findConstructor(type, MethodType.methodType(void.class, parameterTypes));
+                return constructor.asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Unable to access the canonical constructor of " + type.getName(), e);
+            }
+        }
+    };
+
+    private final Class<R> type;
+    private final ProjectionCatalog catalog;
+    private final String columns;
+    private final List<ProjectionCatalog.Property> used;
+    private final String select;
+    private final ColumnReader[] readers;
+    private final MethodHandle constructor;
+
+    private Projection(Class<R> type, ProjectionCatalog catalog, String columns, List<ProjectionCatalog.Property> used,
+                       ColumnReader[] readers) {
+        this.type = type;
+        this.catalog = catalog;
+        this.columns = columns;
+        this.used = used;
+        this.select = "SELECT " + columns + " FROM " + catalog.fromFor(used);
+        this.readers = readers;
+        this.constructor = CONSTRUCTORS.get(type);
+    }
+
+    static <R extends Record> Projection<R> compile(Class<R> type, ProjectionCatalog catalog) {
+        RecordComponent[] components = type.getRecordComponents();
+        if (components == null || components.length == 0) {
+            throw new IllegalArgumentException(type.getName() + " must be a record with at least one component");
+        }
+        List<ProjectionCatalog.Property> used = new ArrayList<>();
+        StringBuilder columns = new StringBuilder();
+        ColumnReader[] readers = new ColumnReader[components.length];
+        for (int i = 0; i < components.length; i++) {
+            ProjectionCatalog.Property property = catalog.property(components[i].getName());
+            used.add(property);
+            if (i > 0) columns.append(", ");
+            columns.append(property.column());
+            readers[i] = readerFor(components[i].getType());
+        }
+        return new Projection<>(type, catalog, columns.toString(), used, readers);
+    }
+
+    /**
+     * @return the SELECT ... FROM ... (with joins) for this projection, to which a WHERE or ORDER BY can be appended
+     */
+    String select() {
+        return select;
+    }
+
+    /**
+     * @return the SELECT ... FROM ..., also joining what the other properties (e.g. of a WHERE clause) need
+     */
+    String select(Collection<ProjectionCatalog.Property> otherProperties) {
+        if (otherProperties.isEmpty()) return select;
+        List<ProjectionCatalog.Property> all = new ArrayList<>(used);
+        all.addAll(otherProperties);
+        return "SELECT " + columns + " FROM " + catalog.fromFor(all);
+    }
+
+    R read(ResultSet rs) throws SQLException {
+        Object[] values = new Object[readers.length];
+        for (int i = 0; i < readers.length; i++) {
+            values[i] = readers[i].read(rs, i + 1);
+        }
+        try {
+            return type.cast((Object) constructor.invokeExact(values));
+        } catch (Throwable e) {
+            throw new DataException("Unable to construct " + type.getName(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader readerFor(Class<?> type) {
+        if (type == long.class) return ResultSet::getLong;
+        if (type == int.class) return ResultSet::getInt;
+        if (type == double.class) return ResultSet::getDouble;
+        if (type == boolean.class) return ResultSet::getBoolean;
+        if (type == Long.class) return nullable(ResultSet::getLong);
+        if (type == Integer.class) return nullable(ResultSet::getInt);
+        if (type == Double.class) return nullable(ResultSet::getDouble);
+        if (type == Boolean.class) return nullable(ResultSet::getBoolean);
+        if (type == String.class) return ResultSet::getString;
+        if (type == BigDecimal.class) return ResultSet::getBigDecimal;
+        if (type == LocalDate.class) return (rs, i) -> rs.getObject(i, LocalDate.class);
+        if (type == LocalDateTime.class) return (rs, i) -> rs.getObject(i, LocalDateTime.class);
+        if (type == ZonedDateTime.class) return (rs, i) -> {
+            // timestamps are stored in UTC, as PeopleRepository writes them
+            Timestamp timestamp = rs.getTimestamp(i);
+            return timestamp == null ? null : ZonedDateTime.of(timestamp.toLocalDateTime(), ZoneId.of("+0"));
+        };
+        if (type.isEnum()) return (rs, i) -> {
+            String name = rs.getString(i);
+            return name == null ? null : Enum.valueOf((Class<? extends Enum>) type, name.toUpperCase());
+        };
+        if (type.isPrimitive()) throw new IllegalArgumentException("Unsupported record component type: " + type);
+        return (rs, i) -> rs.getObject(i, type);
+    }
+
+    private static ColumnReader nullable(ColumnReader reader) {
+        return (rs, i) -> {
+            Object value = reader.read(rs, i);
+            return rs.wasNull() ? null : value;
+        };
+    }
+}
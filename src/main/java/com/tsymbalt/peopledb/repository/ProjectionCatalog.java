@@ -0,0 +1,44 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.util.*;
+
+/**
+ * The properties a repository can project into records (and filter or group by), each mapped to a column
+ * expression and, for columns of another table, the join that brings that table in.
+ * @param from the FROM clause without joins, e.g. {@code "PEOPLE AS P"}
+ * @param idColumn the id column expression used for paging, e.g. {@code "P.ID"}
+ */
+record ProjectionCatalog(String from, String idColumn, Map<String, Property> properties) {
+
+    /**
+     * @param join the join clause the column needs, or null if it is on the base table. Properties that share
+     *             a join are joined once.
+     */
+    record Property(String column, String join) {
+    }
+
+    ProjectionCatalog {
+        properties = Collections.unmodifiableMap(new LinkedHashMap<>(properties));
+    }
+
+    Property property(String name) {
+        Property property = properties.get(name);
+        if (property == null) {
+            throw new IllegalArgumentException("Unknown property '" + name + "'; expected one of " + properties.keySet());
+        }
+        return property;
+    }
+
+    /**
+     * @return the FROM clause with the joins the given properties need, in catalog order
+     */
+    String fromFor(Collection<Property> used) {
+        Set<String> joins = new LinkedHashSet<>();
+        for (Property property : properties.values()) {
+            if (property.join() != null && used.contains(property)) joins.add(property.join());
+        }
+        StringBuilder clause = new StringBuilder(from);
+        for (String join : joins) clause.append(' ').append(join);
+        return clause.toString();
+    }
+}
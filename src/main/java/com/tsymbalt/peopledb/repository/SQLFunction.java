@@ -0,0 +1,8 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface SQLFunction<A, R> {
+    R apply(A a) throws SQLException;
+}
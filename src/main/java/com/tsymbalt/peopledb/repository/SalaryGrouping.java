@@ -0,0 +1,30 @@
+package com.tsymbalt.peopledb.repository;
+
+/**
+ * What {@link PeopleRepository#aggregateSalaries} can group people by.
+ */
+public enum SalaryGrouping {
+    HOME_REGION("homeRegion", null),
+    BUSINESS_REGION("businessRegion", null),
+    BIRTH_YEAR(null, "EXTRACT(YEAR FROM P.DOB)"),
+    BIRTH_DECADE(null, "EXTRACT(YEAR FROM P.DOB) / 10 * 10");
+
+    private final String property;
+    private final String expression;
+
+    SalaryGrouping(String property, String expression) {
+        this.property = property;
+        this.expression = expression;
+    }
+
+    /**
+     * @return the catalog property this grouping reads, or null if it is computed on the PEOPLE table
+     */
+    String property() {
+        return property;
+    }
+
+    String expression(ProjectionCatalog catalog) {
+        return property == null ? expression : catalog.property(property).column();
+    }
+}
@@ -0,0 +1,14 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+
+import java.util.Map;
+
+/**
+ * The @SQL statements of one repository class, generated at compile time by the repository annotation processor.
+ */
+public interface SqlRegistry {
+    Class<?> repositoryType();
+
+    Map<CrudOperation, String> statements();
+}
@@ -0,0 +1,65 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Bounded cache of prepared statements for one connection, keyed by operation and SQL text.
+ * Statements are closed when they are evicted and when the cache is closed.
+ */
+class StatementCache implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private record Key(CrudOperation operation, String sql) {
+    }
+
+    private final Connection connection;
+    private final LruMap<Key, PreparedStatement> statements;
+
+    StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY);
+    }
+
+    StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.statements = new LruMap<>(capacity, (key, ps) -> closeQuietly(ps));
+    }
+
+    /**
+     * @return a cached statement for this operation and SQL, preparing it on first use. SAVE statements
+     * are prepared so that they return generated keys.
+     */
+    PreparedStatement prepare(CrudOperation operation, String sql) throws SQLException {
+        Key key = new Key(operation, sql);
+        PreparedStatement ps = statements.get(key);
+        if (ps == null || ps.isClosed()) {
+            ps = operation == CrudOperation.SAVE
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql);
+            statements.put(key, ps);
+        }
+        return ps;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    @Override
+    public void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+            // the statement is being discarded either way
+        }
+    }
+}
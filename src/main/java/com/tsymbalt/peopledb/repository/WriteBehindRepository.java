@@ -0,0 +1,248 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.exception.DataException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues saves and updates in memory and writes them to the repository as JDBC batches, trading
+ * per-call durability for throughput. Repeated updates to the same @Id are coalesced into one, and an
+ * update to an entity whose save is still queued is folded into that save.
+ * <p>
+ * The queue is flushed when {@code maxQueued} mutations are pending (on the calling thread), when
+ * {@code maxDelay} has passed since the oldest pending one (on a background thread), on {@link #flush()}
+ * and on {@link #close()}. Saved entities get their ids when the flush that writes them completes.
+ * <p>
+ * A background flush shares the repository with the caller, so for a single-connection repository
+ * don't use the repository directly while buffered mutations are pending. If a flush fails, the mutations it
+ * didn't write are put back at the head of the queue for the next flush to retry, so none are dropped; a failed
+ * background flush also has its failure rethrown from the next call.
+ * Create one with {@link CRUDRepository#writeBehind(int, Duration)}.
+ */
+public class WriteBehindRepository<T> implements AutoCloseable {
+    private final CRUDRepository<T> repository;
+    private final int maxQueued;
+    private final Duration maxDelay;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<T> pendingSaves = new ArrayList<>();
+    private Set<T> pendingSaveSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Map<Long, T> pendingUpdates = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    private final Object flushLock = new Object();
+    private volatile RuntimeException backgroundFailure;
+    private long flushes;
+    private long flushedRows;
+    private long coalescedUpdates;
+    private long lastFlushNanos;
+    private long maxFlushNanos;
+    private long totalFlushNanos;
+
+    WriteBehindRepository(CRUDRepository<T> repository, int maxQueued, Duration maxDelay) {
+        if (maxQueued < 1) throw new IllegalArgumentException("Max queued mutations must be positive: " + maxQueued);
+        if (maxDelay.isNegative() || maxDelay.isZero()) throw new IllegalArgumentException("Max delay must be positive: " + maxDelay);
+        this.repository = repository;
+        this.maxQueued = maxQueued;
+        this.maxDelay = maxDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "write-behind-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the entity to be inserted. Its id is assigned when the queue is flushed.
+     */
+    public void save(T entity) {
+        rethrowBackgroundFailure();
+        int depth;
+        synchronized (lock) {
+            ensureOpen();
+            if (pendingSaveSet.add(entity)) {
+                pendingSaves.add(entity);
+            }
+            depth = enqueued();
+        }
+        flushIfFull(depth);
+    }
+
+    /**
+     * Queues the entity's current state to be written. A later update to the same id replaces this one.
+     * @throws IllegalArgumentException if the entity has no id and isn't queued for saving
+     */
+    public void update(T entity) {
+        rethrowBackgroundFailure();
+        Long id = EntityMetadata.of(entity.getClass()).getId(entity);
+        int depth;
+        synchronized (lock) {
+            ensureOpen();
+            if (pendingSaveSet.contains(entity)) {
+                // the queued insert will write the entity's state as of the flush
+                coalescedUpdates++;
+                return;
+            }
+            if (id == null) throw new IllegalArgumentException("Can't update an entity that was never saved: " + entity);
+            if (pendingUpdates.put(id, entity) != null) coalescedUpdates++;
+            depth = enqueued();
+        }
+        flushIfFull(depth);
+    }
+
+    private int enqueued() {
+        int depth = pendingSaves.size() + pendingUpdates.size();
+        if (depth == 1) scheduleFlush();
+        return depth;
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush == null && !closed) {
+            scheduledFlush = scheduler.schedule(this::flushInBackground, maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flushIfFull(int depth) {
+        if (depth >= maxQueued) flush();
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            backgroundFailure = e;
+        }
+    }
+
+    /**
+     * Writes every queued mutation: saves first, in the order queued, then updates. If writing fails, the saves
+     * that didn't get an id and all of the updates are queued again before the failure is thrown.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<T> saves;
+            Map<Long, T> updates;
+            synchronized (lock) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                saves = pendingSaves;
+                updates = pendingUpdates;
+                pendingSaves = new ArrayList<>();
+                pendingSaveSet = Collections.newSetFromMap(new IdentityHashMap<>());
+                pendingUpdates = new LinkedHashMap<>();
+            }
+            if (saves.isEmpty() && updates.isEmpty()) return;
+
+            long start = System.nanoTime();
+            boolean savesWritten = saves.isEmpty();
+            try {
+                if (!savesWritten) {
+                    repository.saveAll(saves);
+                    savesWritten = true;
+                }
+                if (!updates.isEmpty()) repository.updateAll(updates.values());
+            } catch (RuntimeException e) {
+                requeue(savesWritten ? List.of() : unsaved(saves), updates);
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            flushes++;
+            flushedRows += saves.size() + updates.size();
+            lastFlushNanos = elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            totalFlushNanos += elapsed;
+        }
+    }
+
+    private List<T> unsaved(List<T> saves) {
+        List<T> unsaved = new ArrayList<>();
+        for (T entity : saves) {
+            if (EntityMetadata.of(entity.getClass()).getId(entity) == null) unsaved.add(entity);
+        }
+        return unsaved;
+    }
+
+    /**
+     * Puts mutations from a failed flush back ahead of those queued since. An update queued since replaces a
+     * requeued one for the same id, as it carries the newer state.
+     */
+    private void requeue(List<T> saves, Map<Long, T> updates) {
+        synchronized (lock) {
+            List<T> requeuedSaves = new ArrayList<>(saves.size() + pendingSaves.size());
+            for (T entity : saves) {
+                if (pendingSaveSet.add(entity)) requeuedSaves.add(entity);
+            }
+            requeuedSaves.addAll(pendingSaves);
+            pendingSaves = requeuedSaves;
+
+            Map<Long, T> requeuedUpdates = new LinkedHashMap<>(updates);
+            requeuedUpdates.putAll(pendingUpdates);
+            pendingUpdates = requeuedUpdates;
+
+            if (!pendingSaves.isEmpty() || !pendingUpdates.isEmpty()) scheduleFlush();
+        }
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pendingSaves.size() + pendingUpdates.size();
+        }
+    }
+
+    public WriteBehindStats getStats() {
+        int depth = getQueueDepth();
+        synchronized (flushLock) {
+            long coalesced;
+            synchronized (lock) {
+                coalesced = coalescedUpdates;
+            }
+            return new WriteBehindStats(depth, flushes, flushedRows, coalesced,
+                    Duration.ofNanos(lastFlushNanos), Duration.ofNanos(maxFlushNanos), Duration.ofNanos(totalFlushNanos));
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Write-behind buffer is closed");
+    }
+
+    private void rethrowBackgroundFailure() {
+        RuntimeException failure = backgroundFailure;
+        if (failure != null) {
+            backgroundFailure = null;
+            throw new DataException("A background flush failed", failure);
+        }
+    }
+
+    /**
+     * Stops accepting mutations and flushes the ones still queued. The repository itself is left open.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        rethrowBackgroundFailure();
+    }
+}
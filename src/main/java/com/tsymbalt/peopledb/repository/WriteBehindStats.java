@@ -0,0 +1,11 @@
+package com.tsymbalt.peopledb.repository;
+
+import java.time.Duration;
+
+public record WriteBehindStats(int queueDepth, long flushes, long flushedRows, long coalescedUpdates,
+                               Duration lastFlushLatency, Duration maxFlushLatency, Duration totalFlushLatency) {
+
+    public Duration averageFlushLatency() {
+        return flushes == 0 ? Duration.ZERO : totalFlushLatency.dividedBy(flushes);
+    }
+}
@@ -0,0 +1,130 @@
+package com.tsymbalt.peopledb.schema;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Creates and migrates the PEOPLE and ADDRESSES schema. Each migration runs once, in order, and is recorded
+ * in SCHEMA_VERSION; every statement is also written to be harmless if rerun (IF NOT EXISTS), so databases
+ * created by hand before this class existed are brought up to date too.
+ * <p>
+ * H2 commits every DDL statement on its own, so a migration that fails halfway cannot be rolled back: the
+ * statements before the failing one stay applied and the migration stays unrecorded. That is why every
+ * statement must be idempotent; the next {@link #migrate()} then simply runs the whole migration again.
+ * <p>
+ * Call {@link #migrate()} before doing other work on the connection: it commits after every migration.
+ */
+public class SchemaManager {
+    public static final int ID_CACHE_SIZE = 1_000;
+
+    private record Migration(int version, String description, List<String> statements) {
+    }
+
+    private static final String SAME_ADDRESS_CONTENT = """
+            B.STREET_ADDRESS IS NOT DISTINCT FROM A.STREET_ADDRESS AND B.ADDRESS2 IS NOT DISTINCT FROM A.ADDRESS2
+            AND B.CITY IS NOT DISTINCT FROM A.CITY AND B.STATE IS NOT DISTINCT FROM A.STATE
+            AND B.POSTCODE IS NOT DISTINCT FROM A.POSTCODE AND B.COUNTY IS NOT DISTINCT FROM A.COUNTY
+            AND B.REGION IS NOT DISTINCT FROM A.REGION AND B.COUNTRY IS NOT DISTINCT FROM A.COUNTRY""";
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create ADDRESSES and PEOPLE", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS ADDRESSES (
+                        ID BIGINT GENERATED BY DEFAULT AS IDENTITY (CACHE %d) PRIMARY KEY,
+                        STREET_ADDRESS VARCHAR(255), ADDRESS2 VARCHAR(255), CITY VARCHAR(255), STATE VARCHAR(255),
+                        POSTCODE VARCHAR(255), COUNTY VARCHAR(255), REGION VARCHAR(255), COUNTRY VARCHAR(255))""".formatted(ID_CACHE_SIZE),
+                    """
+                    CREATE TABLE IF NOT EXISTS PEOPLE (
+                        ID BIGINT GENERATED BY DEFAULT AS IDENTITY (CACHE %d) PRIMARY KEY,
+                        FIRST_NAME VARCHAR(255), LAST_NAME VARCHAR(255), DOB TIMESTAMP, SALARY DECIMAL(15, 2),
+                        EMAIL VARCHAR(255), HOME_ADDRESS BIGINT, BIZ_ADDRESS BIGINT)""".formatted(ID_CACHE_SIZE))),
+            new Migration(2, "Add columns missing from older PEOPLE tables", List.of(
+                    "ALTER TABLE PEOPLE ADD COLUMN IF NOT EXISTS SALARY DECIMAL(15, 2)",
+                    "ALTER TABLE PEOPLE ADD COLUMN IF NOT EXISTS EMAIL VARCHAR(255)",
+                    "ALTER TABLE PEOPLE ADD COLUMN IF NOT EXISTS HOME_ADDRESS BIGINT",
+                    "ALTER TABLE PEOPLE ADD COLUMN IF NOT EXISTS BIZ_ADDRESS BIGINT")),
+            new Migration(3, "Foreign keys and lookup indexes", List.of(
+                    // created before the foreign keys so that H2 uses them rather than adding unnamed ones
+                    "CREATE INDEX IF NOT EXISTS IDX_PEOPLE_HOME_ADDRESS ON PEOPLE(HOME_ADDRESS)",
+                    "CREATE INDEX IF NOT EXISTS IDX_PEOPLE_BIZ_ADDRESS ON PEOPLE(BIZ_ADDRESS)",
+                    "ALTER TABLE PEOPLE ADD CONSTRAINT IF NOT EXISTS FK_PEOPLE_HOME_ADDRESS FOREIGN KEY (HOME_ADDRESS) REFERENCES ADDRESSES(ID)",
+                    "ALTER TABLE PEOPLE ADD CONSTRAINT IF NOT EXISTS FK_PEOPLE_BIZ_ADDRESS FOREIGN KEY (BIZ_ADDRESS) REFERENCES ADDRESSES(ID)",
+                    "CREATE INDEX IF NOT EXISTS IDX_PEOPLE_EMAIL ON PEOPLE(EMAIL)",
+                    "CREATE INDEX IF NOT EXISTS IDX_PEOPLE_LAST_NAME ON PEOPLE(LAST_NAME)",
+                    // leading columns of AddressRepository's find-by-content lookup
+                    "CREATE INDEX IF NOT EXISTS IDX_ADDRESSES_CONTENT ON ADDRESSES(STREET_ADDRESS, POSTCODE, CITY)")),
+            new Migration(4, "Cache identity values", List.of(
+                    // tables created before migration 1 generate one id at a time
+                    "ALTER TABLE ADDRESSES ALTER COLUMN ID SET CACHE " + ID_CACHE_SIZE,
+                    "ALTER TABLE PEOPLE ALTER COLUMN ID SET CACHE " + ID_CACHE_SIZE)),
+            new Migration(5, "Unique address content", List.of(
+                    // point people at the lowest id of each group of identical addresses, then drop the others
+                    "UPDATE PEOPLE P SET HOME_ADDRESS = (SELECT MIN(B.ID) FROM ADDRESSES A JOIN ADDRESSES B ON "
+                            + SAME_ADDRESS_CONTENT + " WHERE A.ID = P.HOME_ADDRESS) WHERE HOME_ADDRESS IS NOT NULL",
+                    "UPDATE PEOPLE P SET BIZ_ADDRESS = (SELECT MIN(B.ID) FROM ADDRESSES A JOIN ADDRESSES B ON "
+                            + SAME_ADDRESS_CONTENT + " WHERE A.ID = P.BIZ_ADDRESS) WHERE BIZ_ADDRESS IS NOT NULL",
+                    "DELETE FROM ADDRESSES A WHERE EXISTS (SELECT 1 FROM ADDRESSES B WHERE B.ID < A.ID AND "
+                            + SAME_ADDRESS_CONTENT + ")",
+                    // backs both AddressRepository's find-by-content lookup and its dedupe on insert
+                    """
+                    CREATE UNIQUE NULLS NOT DISTINCT INDEX IF NOT EXISTS IDX_ADDRESSES_CONTENT_UNIQUE
+                    ON ADDRESSES(STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY)""",
+                    "DROP INDEX IF EXISTS IDX_ADDRESSES_CONTENT"))
+    );
+
+    private final Connection connection;
+
+    public SchemaManager(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Applies the migrations newer than the database's current version.
+     * @return how many migrations were applied
+     */
+    public int migrate() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (
+                        VERSION INT PRIMARY KEY, DESCRIPTION VARCHAR(255), APPLIED_AT TIMESTAMP DEFAULT CURRENT_TIMESTAMP)""");
+            connection.commit();
+            int current = currentVersion();
+            int applied = 0;
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) continue;
+                try {
+                    for (String sql : migration.statements()) stmt.execute(sql);
+                    try (PreparedStatement ps = connection.prepareStatement("INSERT INTO SCHEMA_VERSION (VERSION, DESCRIPTION) VALUES (?, ?)")) {
+                        ps.setInt(1, migration.version());
+                        ps.setString(2, migration.description());
+                        ps.executeUpdate();
+                    }
+                    connection.commit();
+                    applied++;
+                } catch (SQLException e) {
+                    throw new SQLException("Migration " + migration.version() + " (" + migration.description() + ") failed", e);
+                }
+            }
+            return applied;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return the latest applied migration, or 0 for a database this class hasn't migrated yet
+     */
+    public int currentVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_VERSION")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+}
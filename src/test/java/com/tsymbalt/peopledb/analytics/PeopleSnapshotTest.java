@@ -0,0 +1,69 @@
+package com.tsymbalt.peopledb.analytics;
+
+import com.tsymbalt.peopledb.model.Person;
+import com.tsymbalt.peopledb.repository.PeopleRepository;
+import com.tsymbalt.peopledb.schema.SchemaManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PeopleSnapshotTest {
+    private Connection connection;
+    private PeopleRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:~/peopledb;TRACE_LEVEL_SYSTEM_OUT=0".replace("~", System.getProperty("user.home")));
+        new SchemaManager(connection).migrate();
+        connection.setAutoCommit(false);
+        repo = new PeopleRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void canRefreshAndScan() {
+        PeopleSnapshot snapshot = PeopleSnapshot.load(repo);
+        assertThat(snapshot.size()).isEqualTo(repo.count());
+
+        String lastName = "Snapshot-" + UUID.randomUUID();
+        Person person = new Person("John", lastName, ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")));
+        person.setSalary(new BigDecimal("73000.80"));
+        repo.save(person);
+
+        assertThat(snapshot.refresh()).isEqualTo(1);
+        Selection selected = snapshot.lastNameIs(lastName);
+        assertThat(selected.count()).isEqualTo(1);
+        assertThat(snapshot.sumSalaryCents(selected)).isEqualTo(7_300_080);
+        assertThat(selected.and(snapshot.bornBetween(LocalDate.of(1981, 1, 1), LocalDate.of(1981, 12, 31))).count()).isEqualTo(1);
+        assertThat(selected.and(snapshot.salaryBetween(0, 7_000_000)).count()).isZero();
+    }
+
+    @Test
+    public void rejectsSelectionsFromBeforeRefresh() {
+        PeopleSnapshot snapshot = PeopleSnapshot.load(repo);
+        Selection stale = snapshot.all();
+        repo.save(new Person("John", "Snapshot-" + UUID.randomUUID(), ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+        snapshot.refresh();
+
+        assertThatThrownBy(() -> snapshot.sumSalaryCents(stale)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> stale.and(snapshot.all())).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,137 @@
+package com.tsymbalt.peopledb.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledDataSourceTest {
+    private PooledDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new PooledDataSource("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", 2);
+        dataSource.setBorrowTimeout(Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void reusesConnectionAfterItIsReturned() throws SQLException {
+        Connection first = dataSource.getConnection();
+        first.close();
+        assertThat(first.isClosed()).isTrue();
+        try (Connection second = dataSource.getConnection()) {
+            assertThat(second).isSameAs(first);
+            assertThat(second.isClosed()).isFalse();
+        }
+        assertThat(dataSource.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void nestedBorrowOnSameThreadSharesConnection() throws SQLException {
+        try (Connection outer = dataSource.getConnection()) {
+            try (Connection inner = dataSource.getConnection()) {
+                assertThat(inner).isSameAs(outer);
+            }
+            assertThat(outer.isClosed()).isFalse();
+            assertThat(dataSource.getActiveCount()).isEqualTo(1);
+        }
+        assertThat(dataSource.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void otherThreadsGetTheirOwnConnection() throws Exception {
+        try (Connection mine = dataSource.getConnection()) {
+            Connection theirs = CompletableFuture.supplyAsync(() -> {
+                try (Connection c = dataSource.getConnection()) {
+                    return c;
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }).get();
+            assertThat(theirs).isNotSameAs(mine);
+        }
+    }
+
+    @Test
+    public void timesOutWhenPoolIsExhausted() throws Exception {
+        Connection mine = dataSource.getConnection();
+        Thread holder = new Thread(() -> {
+            try {
+                dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        holder.start();
+        holder.join();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                dataSource.getConnection();
+            } catch (SQLException e) {
+                failure.set(e);
+            }
+        });
+        waiter.start();
+        waiter.join();
+        assertThat(failure.get()).isInstanceOf(SQLTimeoutException.class);
+        mine.close();
+    }
+
+    @Test
+    public void rollsBackOpenTransactionOnReturn() throws SQLException {
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(false);
+        }
+        try (Connection c = dataSource.getConnection()) {
+            assertThat(c.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    public void connectionClosedByAnotherThreadIsNotReusedByBorrower() throws Exception {
+        Connection mine = dataSource.getConnection();
+        Connection theirs = CompletableFuture.supplyAsync(() -> {
+            try {
+                mine.close();
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }).get();
+        assertThat(theirs).isSameAs(mine);
+
+        try (Connection next = dataSource.getConnection()) {
+            assertThat(next).isNotSameAs(theirs);
+        }
+        assertThat(theirs.isClosed()).isFalse();
+    }
+
+    @Test
+    public void tellsDiscardListenersWhenConnectionsAreClosed() throws SQLException {
+        List<Connection> discarded = new ArrayList<>();
+        dataSource.addDiscardListener(discarded::add);
+        Connection c = dataSource.getConnection();
+        c.close();
+        assertThat(discarded).isEmpty();
+
+        dataSource.close();
+        assertThat(discarded).containsExactly(c);
+    }
+}
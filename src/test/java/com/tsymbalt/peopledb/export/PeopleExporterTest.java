@@ -0,0 +1,89 @@
+package com.tsymbalt.peopledb.export;
+
+import com.tsymbalt.peopledb.datasource.PooledDataSource;
+import com.tsymbalt.peopledb.model.Person;
+import com.tsymbalt.peopledb.repository.PeopleRepository;
+import com.tsymbalt.peopledb.schema.SchemaManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PeopleExporterTest {
+    private PooledDataSource dataSource;
+    private List<Person> people;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:export-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", 4);
+        try (Connection connection = dataSource.getConnection()) {
+            new SchemaManager(connection).migrate();
+        }
+        PeopleRepository repo = new PeopleRepository(dataSource);
+        people = IntStream.range(0, 25)
+                .mapToObj(i -> {
+                    Person person = new Person("First" + i, i == 3 ? "O'Brien, \"Bo\"" : "Last" + i,
+                            ZonedDateTime.of(1980, 1, 1 + i, 12, 0, 0, 0, ZoneId.of("+0")));
+                    person.setSalary(i % 5 == 0 ? null : new BigDecimal("50000.50"));
+                    return person;
+                })
+                .toList();
+        repo.saveAll(people);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void canExportCsvInIdOrder() throws IOException {
+        Path target = dir.resolve("people.csv");
+        ExportProgress progress = new PeopleExporter(dataSource)
+                .setFormat(ExportFormat.CSV)
+                .setRangeSize(4)
+                .setParallelism(3)
+                .exportTo(target);
+
+        List<String> lines = Files.readAllLines(target);
+        assertThat(progress.rows()).isEqualTo(25);
+        assertThat(progress.rangesDone()).isEqualTo(progress.ranges()).isEqualTo(7);
+        assertThat(lines).hasSize(26);
+        assertThat(lines.get(0)).isEqualTo("id,firstName,lastName,dob,salary,email,homeAddressId,businessAddressId");
+        assertThat(lines.get(1)).isEqualTo(people.get(0).getId() + ",First0,Last0,1980-01-01T12:00Z,,,,");
+        assertThat(lines.get(2)).isEqualTo(people.get(1).getId() + ",First1,Last1,1980-01-02T12:00Z,50000.50,,,");
+        assertThat(lines.get(4)).contains(",\"O'Brien, \"\"Bo\"\"\",");
+        assertThat(lines.get(25)).startsWith(people.get(24).getId() + ",");
+        assertThat(dir.toFile().list()).containsExactly("people.csv");
+    }
+
+    @Test
+    public void canExportJsonLines() throws IOException {
+        Path target = dir.resolve("people.jsonl");
+        new PeopleExporter(dataSource).setFormat(ExportFormat.JSONL).setRangeSize(10).exportTo(target);
+
+        List<String> lines = Files.readAllLines(target);
+        assertThat(lines).hasSize(25);
+        assertThat(lines.get(0)).isEqualTo("{\"id\":" + people.get(0).getId()
+                + ",\"firstName\":\"First0\",\"lastName\":\"Last0\",\"dob\":\"1980-01-01T12:00Z\",\"salary\":null"
+                + ",\"email\":null,\"homeAddressId\":null,\"businessAddressId\":null}");
+        assertThat(lines.get(3)).contains("\"lastName\":\"O'Brien, \\\"Bo\\\"\"");
+    }
+}
@@ -0,0 +1,26 @@
+package com.tsymbalt.peopledb.importer;
+
+import com.tsymbalt.peopledb.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Hr5mPersonParserTest {
+    private static final String LINE = "742048,Mrs.,Lois,H,Walker,F,lois.walker@hotmail.com,Donald Walker,Helen Walker,Lewis,"
+            + "3/29/1981,01:53:14 AM,36.36,60,11/24/2003,4,2003,Nov,November,24,Mon,Monday,13.68,20,Q4,168251,21%,"
+            + "467-99-4677,303-572-8492,Denver,Denver,Denver,80224,West,lwalker,DCa}.T@vf]";
+
+    @Test
+    public void canParseLine() {
+        Person person = new Hr5mPersonParser().apply(LINE);
+        assertThat(person.getFirstName()).isEqualTo("Lois");
+        assertThat(person.getLastName()).isEqualTo("Walker");
+        assertThat(person.getEmail()).isEqualTo("lois.walker@hotmail.com");
+        assertThat(person.getDob()).isEqualTo(ZonedDateTime.of(1981, 3, 29, 1, 53, 14, 0, ZoneId.of("+0")));
+        assertThat(person.getSalary()).isEqualTo(new BigDecimal("168251"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.tsymbalt.peopledb.importer;
+
+import com.tsymbalt.peopledb.exception.DataException;
+import com.tsymbalt.peopledb.model.Person;
+import com.tsymbalt.peopledb.schema.SchemaManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PeopleImporterTest {
+    private static final Function<String, Person> PARSER = line -> {
+        String[] fields = line.split(",");
+        if (fields.length != 3) throw new IllegalArgumentException("Expected 3 fields");
+        return new Person(fields[0], fields[1], ZonedDateTime.parse(fields[2]));
+    };
+
+    @TempDir
+    Path tempDir;
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:importer-" + UUID.randomUUID());
+        new SchemaManager(connection).migrate();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (connection != null) connection.close();
+    }
+
+    @Test
+    public void importsChunksInFileOrder() throws IOException, SQLException {
+        Path csv = writeCsv(25, -1);
+        List<ImportProgress> progress = new ArrayList<>();
+
+        ImportProgress result;
+        try (PeopleImporter importer = new PeopleImporter(connection, PARSER)
+                .setChunkSize(4)
+                .setCommitInterval(10)
+                .setParserThreads(3)
+                .setQueueCapacity(2)
+                .setProgressListener(progress::add)) {
+            result = importer.importFrom(csv);
+        }
+
+        assertThat(result.rowsCommitted()).isEqualTo(25);
+        assertThat(result.rowsThisRun()).isEqualTo(25);
+        // commits land on chunk boundaries once 10 rows are pending, plus one for the remainder
+        assertThat(progress).extracting(ImportProgress::rowsCommitted).containsExactly(12L, 24L, 25L);
+        assertThat(firstNamesInIdOrder()).containsExactlyElementsOf(firstNames(25));
+        assertThat(connection.getAutoCommit()).isTrue();
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterParseFailure() throws IOException, SQLException {
+        Path csv = writeCsv(20, 13);
+        List<ImportProgress> progress = new ArrayList<>();
+
+        try (PeopleImporter importer = new PeopleImporter(connection, PARSER)
+                .setChunkSize(5)
+                .setCommitInterval(5)
+                .setCheckpoint("people")
+                .setProgressListener(progress::add)) {
+            assertThatThrownBy(() -> importer.importFrom(csv))
+                    .isInstanceOf(DataException.class)
+                    .hasMessageContaining("after 10 committed rows")
+                    .hasRootCauseMessage("Expected 3 fields");
+        }
+        assertThat(progress).extracting(ImportProgress::rowsCommitted).containsExactly(5L, 10L);
+        assertThat(firstNamesInIdOrder()).containsExactlyElementsOf(firstNames(10));
+        assertThat(connection.getAutoCommit()).isTrue();
+
+        writeCsv(20, -1);
+        progress.clear();
+        ImportProgress result;
+        try (PeopleImporter importer = new PeopleImporter(connection, PARSER)
+                .setChunkSize(5)
+                .setCommitInterval(5)
+                .setCheckpoint("people")
+                .setProgressListener(progress::add)) {
+            result = importer.importFrom(csv);
+        }
+
+        assertThat(result.rowsCommitted()).isEqualTo(20);
+        assertThat(result.rowsThisRun()).isEqualTo(10);
+        assertThat(progress).extracting(ImportProgress::rowsCommitted).containsExactly(15L, 20L, 20L);
+        assertThat(firstNamesInIdOrder()).containsExactlyElementsOf(firstNames(20));
+    }
+
+    /**
+     * @param badRow zero-based row whose line is written without its date, or -1 for none
+     */
+    private Path writeCsv(int rows, int badRow) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("FIRST_NAME,LAST_NAME,DOB");
+        List<String> firstNames = firstNames(rows);
+        for (int i = 0; i < rows; i++) {
+            lines.add(i == badRow
+                    ? firstNames.get(i) + ",Smith"
+                    : firstNames.get(i) + ",Smith,1980-11-15T15:15:00-06:00");
+        }
+        return Files.write(tempDir.resolve("people.csv"), lines);
+    }
+
+    private static List<String> firstNames(int rows) {
+        List<String> names = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) names.add("Person" + i);
+        return names;
+    }
+
+    private List<String> firstNamesInIdOrder() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = connection.createStatement().executeQuery("SELECT FIRST_NAME FROM PEOPLE ORDER BY ID")) {
+            while (rs.next()) names.add(rs.getString(1));
+        }
+        return names;
+    }
+}
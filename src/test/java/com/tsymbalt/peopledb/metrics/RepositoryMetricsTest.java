@@ -0,0 +1,39 @@
+package com.tsymbalt.peopledb.metrics;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryMetricsTest {
+
+    @Test
+    public void canReportPercentiles() {
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        for (long micros = 1; micros <= 100; micros++) {
+            metrics.onOperation(new OperationSample(String.class, CrudOperation.FIND_BY_ID, 1, micros * 1_000, null));
+        }
+        metrics.onOperation(new OperationSample(String.class, CrudOperation.FIND_BY_ID, 0, 5_000, new SQLException()));
+
+        OperationMetrics findById = metrics.get(String.class, CrudOperation.FIND_BY_ID);
+        assertThat(findById.calls()).isEqualTo(101);
+        assertThat(findById.errors()).isEqualTo(1);
+        assertThat(findById.rows()).isEqualTo(100);
+        assertThat(findById.p50()).isBetween(Duration.ofNanos(50_000), Duration.ofNanos(57_000));
+        assertThat(findById.p99()).isBetween(Duration.ofNanos(99_000), Duration.ofNanos(100_000));
+        assertThat(findById.max()).isEqualTo(Duration.ofNanos(100_000));
+        assertThat(metrics.get(String.class, CrudOperation.SAVE)).isEqualTo(OperationMetrics.EMPTY);
+    }
+
+    @Test
+    public void bucketsCoverTheirValues() {
+        for (long value : new long[]{0, 7, 8, 15, 16, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.upperBoundOf(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) assertThat(LatencyHistogram.upperBoundOf(index - 1)).isLessThan(value);
+        }
+    }
+}
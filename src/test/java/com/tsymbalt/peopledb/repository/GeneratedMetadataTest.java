@@ -0,0 +1,41 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.model.Address;
+import com.tsymbalt.peopledb.model.CrudOperation;
+import com.tsymbalt.peopledb.model.Person;
+import com.tsymbalt.peopledb.model.Region;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeneratedMetadataTest {
+
+    @Test
+    public void hasGeneratedStatementsForRepositories() {
+        assertThat(GeneratedMetadata.statementsFor(PeopleRepository.class))
+                .containsEntry(CrudOperation.FIND_BY_ID, PeopleRepository.FIND_BY_ID_SQL)
+                .containsEntry(CrudOperation.SAVE, PeopleRepository.INSERT_PERSON_SQL);
+        assertThat(GeneratedMetadata.statementsFor(AddressRepository.class)).containsKey(CrudOperation.SAVE);
+    }
+
+    @Test
+    public void canSetIdThroughGeneratedAccessors() {
+        Person person = new Person("John", "Smith", ZonedDateTime.now());
+        Address address = new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST);
+        EntityMetadata.of(Person.class).setId(person, 10L);
+        EntityMetadata.of(Address.class).setId(address, 20L);
+
+        assertThat(GeneratedMetadata.idAccessorFor(Person.class)).isNotNull();
+        assertThat(GeneratedMetadata.idAccessorFor(Address.class)).isNotNull();
+        assertThat(person.getId()).isEqualTo(10L);
+        assertThat(EntityMetadata.of(Address.class).getId(address)).isEqualTo(20L);
+    }
+
+    @Test
+    public void generatesTheIdColumn() {
+        assertThat(GeneratedMetadata.idAccessorFor(Person.class).idColumn()).isEqualTo("ID");
+        assertThat(EntityMetadata.of(Address.class).idColumn()).isEqualTo("ID");
+    }
+}
@@ -1,8 +1,17 @@
 package com.tsymbalt.peopledb.repository;
 
+import com.tsymbalt.peopledb.exception.UnableToSaveException;
+import com.tsymbalt.peopledb.importer.Hr5mPersonParser;
+import com.tsymbalt.peopledb.importer.ImportProgress;
+import com.tsymbalt.peopledb.importer.PeopleImporter;
+import com.tsymbalt.peopledb.metrics.OperationMetrics;
+import com.tsymbalt.peopledb.metrics.RepositoryMetrics;
 import com.tsymbalt.peopledb.model.Address;
+import com.tsymbalt.peopledb.model.CrudOperation;
 import com.tsymbalt.peopledb.model.Person;
 import com.tsymbalt.peopledb.model.Region;
+import com.tsymbalt.peopledb.model.SalaryAggregate;
+import com.tsymbalt.peopledb.schema.SchemaManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -10,18 +19,23 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.joining;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class PeopleRepositoryTest {
     private Connection connection;
@@ -32,6 +46,7 @@ public class PeopleRepositoryTest {
         //connection = DriverManager.getConnection("jdbc:h2:/Users/tamaratsymbaliuk/Documents/peopledb");
         //connection = DriverManager.getConnection("jdbc:h2:~/peopledb".replace("~", System.getProperty("user.home")));
         connection = DriverManager.getConnection("jdbc:h2:~/peopledb;TRACE_LEVEL_SYSTEM_OUT=0".replace("~", System.getProperty("user.home")));
+        new SchemaManager(connection).migrate();
         connection.setAutoCommit(false);
         repo = new PeopleRepository(connection);
     }
@@ -79,6 +94,56 @@ public class PeopleRepositoryTest {
         // connection.commit();
     }
     @Test
+    public void canSaveAllPeople() {
+        repo.setBatchSize(2);
+        List<Person> people = List.of(
+                new Person("John", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6"))),
+                new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))),
+                new Person("Sam", "Smith", ZonedDateTime.of(1982,1,15, 15,15,0,0, ZoneId.of("-6"))));
+        long startCount = repo.count();
+        List<Person> savedPeople = repo.saveAll(people);
+        assertThat(savedPeople).allMatch(p -> p.getId() != null && p.getId() > 0);
+        assertThat(savedPeople).extracting(Person::getId).doesNotHaveDuplicates();
+        assertThat(repo.count()).isEqualTo(startCount + 3);
+    }
+    @Test
+    public void canSaveAllPeopleSharingBizAddress() {
+        Address address = new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST);
+        Person john = new Person("John", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+        Person bobby = new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")));
+        john.setBusinessAddress(address);
+        bobby.setBusinessAddress(address);
+
+        long savedCount = repo.saveAll(Stream.of(john, bobby));
+        assertThat(savedCount).isEqualTo(2);
+        assertThat(john.getBusinessAddress().get().id()).isGreaterThan(0);
+        assertThat(bobby.getBusinessAddress().get().id()).isEqualTo(john.getBusinessAddress().get().id());
+    }
+    @Test
+    public void savesIdenticalAddressesOnce() {
+        Person john = new Person("John", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+        Person bobby = new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")));
+        john.setBusinessAddress(new Address(null, "1 Main St.", null, "Denver", "CO", "80224", "United States", "Denver", Region.WEST));
+        bobby.setBusinessAddress(new Address(null, "1 Main St.", null, "Denver", "CO", "80224", "United States", "Denver", Region.WEST));
+
+        repo.save(john);
+        repo.save(bobby);
+        assertThat(bobby.getBusinessAddress().get().id()).isEqualTo(john.getBusinessAddress().get().id());
+    }
+    @Test
+    public void forgetsDeletedAddressIds() {
+        AddressRepository addresses = new AddressRepository(connection);
+        String street = UUID.randomUUID() + " Elm St.";
+        Address first = addresses.save(new Address(null, street, null, "Denver", "CO", "80224", "United States", "Denver", null));
+        assertThat(addresses.save(new Address(null, street, null, "Denver", "CO", "80224", "United States", "Denver", null)).id())
+                .isEqualTo(first.id());
+
+        addresses.delete(first);
+        Address second = addresses.save(new Address(null, street, null, "Denver", "CO", "80224", "United States", "Denver", null));
+        assertThat(second.id()).isNotEqualTo(first.id());
+        assertThat(addresses.findById(second.id()).get().region()).isNull();
+    }
+    @Test
     public void canFindPersonByIdWithHomeAddress() throws SQLException {
         Person john = new Person("Sam", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
         Address address = new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST);
@@ -99,6 +164,100 @@ public class PeopleRepositoryTest {
         assertThat(foundPerson.getBusinessAddress().get().state()).isEqualTo("WA");
     }
 
+    @Test
+    public void canLoadAddressesLazily() {
+        Person john = new Person("Sam", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+        Address address = new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST);
+        john.setHomeAddress(address);
+        Person savedPerson = repo.save(john);
+
+        repo.setAddressFetchPlan(FetchPlan.LAZY);
+        Person lazyPerson = repo.findById(savedPerson.getId()).get();
+        assertThat(lazyPerson.getHomeAddress().get().id()).isEqualTo(address.id());
+        assertThat(lazyPerson.getBusinessAddress()).isEmpty();
+
+        repo.setAddressFetchPlan(FetchPlan.NONE);
+        assertThat(repo.findById(savedPerson.getId()).get().getHomeAddress()).isEmpty();
+    }
+
+    @Test
+    public void doesNotServeCachedPeopleAcrossFetchPlans() {
+        Person john = new Person("Sam", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+        john.setHomeAddress(new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST));
+        Person savedPerson = repo.save(john);
+        repo.enableCache(100, Duration.ofMinutes(1));
+
+        repo.setAddressFetchPlan(FetchPlan.NONE);
+        assertThat(repo.findById(savedPerson.getId()).get().getHomeAddress()).isEmpty();
+        repo.setAddressFetchPlan(FetchPlan.EAGER);
+        assertThat(repo.findById(savedPerson.getId()).get().getHomeAddress()).isPresent();
+    }
+
+    private record NameAndSalary(long id, String lastName, BigDecimal salary) {}
+    private record HomeRegion(Long id, Region homeRegion) {}
+
+    @Test
+    public void canProjectIntoRecords() {
+        Person john = new Person("Sam", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+        john.setSalary(new BigDecimal("73000.80"));
+        john.setHomeAddress(new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST));
+        Person savedPerson = repo.save(john);
+
+        NameAndSalary nameAndSalary = repo.findById(savedPerson.getId(), NameAndSalary.class).get();
+        assertThat(nameAndSalary.lastName()).isEqualTo("Smith");
+        assertThat(nameAndSalary.salary()).isEqualByComparingTo("73000.80");
+        assertThat(repo.findById(savedPerson.getId(), HomeRegion.class).get().homeRegion()).isEqualTo(Region.WEST);
+        assertThat(repo.findPage(NameAndSalary.class, savedPerson.getId() - 1, 1)).containsExactly(nameAndSalary);
+    }
+
+    @Test
+    public void canAggregateSalariesByHomeRegion() {
+        long westCountBefore = westAggregate().map(SalaryAggregate::count).orElse(0L);
+        Address address = new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST);
+        for (String salary : List.of("50000.00", "70000.00")) {
+            Person person = new Person("Sam", "Smith", ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+            person.setSalary(new BigDecimal(salary));
+            person.setHomeAddress(address);
+            repo.save(person);
+        }
+
+        SalaryAggregate west = westAggregate().get();
+        assertThat(west.count()).isEqualTo(westCountBefore + 2);
+        assertThat(west.max()).isGreaterThanOrEqualTo(new BigDecimal("70000.00"));
+        assertThat(repo.aggregateSalaries().get(0).count()).isEqualTo(repo.count());
+    }
+
+    private Optional<SalaryAggregate> westAggregate() {
+        return repo.aggregateSalaries(SalaryGrouping.HOME_REGION).stream()
+                .filter(a -> a.groupKey().get(0) == Region.WEST)
+                .findFirst();
+    }
+
+    @Test
+    public void canFindByCriteria() {
+        String lastName = "Criteria-" + System.nanoTime();
+        Address address = new Address(null, "123 Bill St.", "Apt. 2B", "Washington", "DC", "99455", "United States", "Fulton County", Region.WEST);
+        for (String salary : List.of("50000.00", "70000.00", "90000.00")) {
+            Person person = new Person("Sam", lastName, ZonedDateTime.of(1980,11,15, 15,15,0,0, ZoneId.of("-6")));
+            person.setSalary(new BigDecimal(salary));
+            person.setHomeAddress(address);
+            repo.save(person);
+        }
+
+        List<Person> found = repo.find(new Criteria()
+                .eq("lastName", lastName)
+                .eq("homeRegion", Region.WEST)
+                .ge("salary", new BigDecimal("60000"))
+                .orderByDesc("salary")
+                .limit(1));
+        assertThat(found).hasSize(1);
+        assertThat(found.get(0).getSalary()).isEqualByComparingTo("90000.00");
+
+        List<NameAndSalary> projected = repo.find(new Criteria().eq("lastName", lastName).orderBy("salary"), NameAndSalary.class);
+        assertThat(projected).extracting(NameAndSalary::salary).hasSize(3);
+        assertThat(projected.get(0).salary()).isEqualByComparingTo("50000.00");
+    }
+
     @Test
     public void canFindPersonById() {
         Person savedPerson = repo.save(new Person("test", "Smith", ZonedDateTime.now()));
@@ -106,6 +265,56 @@ public class PeopleRepositoryTest {
         assertThat(foundPerson).isEqualTo(savedPerson);
     }
 
+    @Test
+    public void canFindAllById() {
+        Person john = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+        Person bobby = repo.save(new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+        Map<Long, Person> found = repo.findAllById(List.of(bobby.getId(), -1L, john.getId()));
+        assertThat(found.keySet()).containsExactly(bobby.getId(), john.getId());
+        assertThat(found.get(john.getId())).isEqualTo(john);
+    }
+
+    @Test
+    public void canServeFindByIdFromCache() {
+        repo.enableCache(100, Duration.ofMinutes(5));
+        Person savedPerson = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+        Person first = repo.findById(savedPerson.getId()).get();
+        Person second = repo.findById(savedPerson.getId()).get();
+        assertThat(second).isSameAs(first);
+        assertThat(repo.getCacheStats().hits()).isEqualTo(1);
+
+        repo.delete(savedPerson);
+        assertThat(repo.findById(savedPerson.getId())).isEmpty();
+    }
+
+    @Test
+    public void canSaveAndFindAsync() {
+        try (AsyncRepository<Person> async = repo.async(8, 16)) {
+            List<CompletableFuture<Person>> saves = Stream.of("John", "Bobby", "Jake")
+                    .map(name -> async.saveAsync(new Person(name, "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")))))
+                    .toList();
+            List<Long> ids = saves.stream().map(CompletableFuture::join).map(Person::getId).toList();
+            Map<Long, Person> found = async.findAllByIdAsync(ids).join();
+            assertThat(found.keySet()).containsExactlyElementsOf(ids);
+            assertThat(async.getInFlight()).isZero();
+        }
+    }
+
+    @Test
+    public void canRecordMetrics() {
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        repo.setMetricsListener(metrics);
+        Person savedPerson = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+        repo.findById(savedPerson.getId());
+        repo.findById(-1L);
+
+        assertThat(metrics.get(PeopleRepository.class, CrudOperation.SAVE).rows()).isEqualTo(1);
+        OperationMetrics findById = metrics.get(PeopleRepository.class, CrudOperation.FIND_BY_ID);
+        assertThat(findById.calls()).isEqualTo(2);
+        assertThat(findById.rows()).isEqualTo(1);
+        assertThat(findById.max()).isPositive();
+    }
+
     @Test
     public void testPersonIdNotFound() {
         Optional<Person> foundPerson =  repo.findById(-1L);
@@ -122,6 +331,33 @@ public class PeopleRepositoryTest {
         assertThat(endCount).isEqualTo(startCount + 2);
     }
     @Test
+    public void canStreamAll() {
+        repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+        repo.setFetchSize(10);
+        long count = repo.count();
+        try (Stream<Person> people = repo.streamAll()) {
+            assertThat(people.count()).isEqualTo(count);
+        }
+    }
+    @Test
+    public void canFindPagesInIdOrder() {
+        repo.saveAll(List.of(
+                new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))),
+                new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))),
+                new Person("Sam", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")))));
+        List<Person> firstPage = repo.findPage(null, 2);
+        List<Person> secondPage = repo.findPage(firstPage.get(1).getId(), 2);
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage.get(0).getId()).isLessThan(firstPage.get(1).getId());
+        assertThat(secondPage.get(0).getId()).isGreaterThan(firstPage.get(1).getId());
+
+        long pagedCount = 0;
+        for (List<Person> page : repo.pages(2)) {
+            pagedCount += page.size();
+        }
+        assertThat(pagedCount).isEqualTo(repo.count());
+    }
+    @Test
     public void canDelete() {
         Person savedPerson = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
         long startCount = repo.count();
@@ -137,6 +373,17 @@ public class PeopleRepositoryTest {
         repo.delete(p1, p2);
         long endCount = repo.count();
         assertThat(endCount).isEqualTo(startCount - 2);
+    }
+    @Test
+    public void canDeleteAllByIdAcrossChunks() {
+        List<Person> people = Stream.generate(() -> new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))))
+                .limit(CRUDRepository.ID_CHUNK_SIZE + 500)
+                .toList();
+        List<Long> ids = repo.saveAll(people).stream().map(Person::getId).toList();
+        long startCount = repo.count();
+        long deleted = repo.deleteAllById(ids, true);
+        assertThat(deleted).isEqualTo(ids.size());
+        assertThat(repo.count()).isEqualTo(startCount - ids.size());
     }
      @Test
     public void experiment() {
@@ -165,25 +412,92 @@ public class PeopleRepositoryTest {
 
      }
 
+     @Test
+    public void canUpdateAllWithDifferentChanges() {
+         Person john = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+         Person bobby = repo.save(new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+         Person jake = repo.save(new Person("Jake", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+         john.setSalary(new BigDecimal("73000.80"));
+         bobby.setLastName("Johnson");
+         jake.setSalary(new BigDecimal("41000.00"));
+
+         repo.updateAll(List.of(john, bobby, jake));
+
+         Map<Long, Person> found = repo.findAllById(List.of(john.getId(), bobby.getId(), jake.getId()));
+         assertThat(found.get(john.getId()).getSalary()).isEqualByComparingTo("73000.80");
+         assertThat(found.get(bobby.getId()).getLastName()).isEqualTo("Johnson");
+         assertThat(found.get(jake.getId()).getSalary()).isEqualByComparingTo("41000.00");
+     }
+
+     @Test
+    public void writesEveryColumnForInstancesItDidNotLoad() throws SQLException {
+         ZonedDateTime dob = ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"));
+         Person saved = new Person("John", "Smith", dob);
+         saved.setSalary(new BigDecimal("50000.00"));
+         repo.save(saved);
+         repo.findById(saved.getId());
+         try (PreparedStatement ps = connection.prepareStatement("UPDATE PEOPLE SET SALARY = 70000 WHERE ID = ?")) {
+             ps.setLong(1, saved.getId());
+             ps.executeUpdate();
+         }
+
+         repo.update(new Person(saved.getId(), "John", "Smith", dob, new BigDecimal("50000.00")));
+         assertThat(repo.findById(saved.getId()).get().getSalary()).isEqualByComparingTo("50000.00");
+     }
+
+     @Test
+    public void canBufferAndCoalesceWrites() {
+         Person savedPerson = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+         Person bobby = new Person("Bobby", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")));
+         try (WriteBehindRepository<Person> buffer = repo.writeBehind(100, Duration.ofMinutes(1))) {
+             buffer.save(bobby);
+             savedPerson.setSalary(new BigDecimal("50000.00"));
+             buffer.update(savedPerson);
+             savedPerson.setSalary(new BigDecimal("73000.80"));
+             buffer.update(savedPerson);
+             assertThat(buffer.getQueueDepth()).isEqualTo(2);
+
+             buffer.flush();
+             assertThat(buffer.getStats().coalescedUpdates()).isEqualTo(1);
+             assertThat(buffer.getStats().flushedRows()).isEqualTo(2);
+         }
+         assertThat(bobby.getId()).isNotNull();
+         assertThat(repo.findById(savedPerson.getId()).get().getSalary()).isEqualByComparingTo("73000.80");
+     }
+
+     @Test
+     public void requeuesMutationsFromFailedFlush() {
+         Person savedPerson = repo.save(new Person("John", "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6"))));
+         Person bobby = new Person("B".repeat(300), "Smith", ZonedDateTime.of(1981,12,15, 15,15,0,0, ZoneId.of("-6")));
+         try (WriteBehindRepository<Person> buffer = repo.writeBehind(100, Duration.ofMinutes(1))) {
+             buffer.save(bobby);
+             savedPerson.setSalary(new BigDecimal("50000.00"));
+             buffer.update(savedPerson);
+
+             // FIRST_NAME is VARCHAR(255), so the save fails before the update is tried
+             assertThatThrownBy(buffer::flush).isInstanceOf(UnableToSaveException.class);
+             assertThat(buffer.getQueueDepth()).isEqualTo(2);
+             assertThat(buffer.getStats().flushes()).isZero();
+
+             bobby.setFirstName("Bobby");
+             buffer.flush();
+             assertThat(buffer.getQueueDepth()).isZero();
+             assertThat(buffer.getStats().flushedRows()).isEqualTo(2);
+         }
+         assertThat(repo.findById(bobby.getId()).get().getFirstName()).isEqualTo("Bobby");
+         assertThat(repo.findById(savedPerson.getId()).get().getSalary()).isEqualByComparingTo("50000.00");
+     }
+
      @Test // load 5 mil records to the DB
      @Disabled
-     public void loadData() throws IOException, SQLException {
-         Files.lines(Path.of("/Users/tamaratsymbaliuk/Downloads/Hr5m.csv"))
-                 .skip(1)
-                 .limit(100)
-                 .map(l-> l.split(","))
-                 .map(a-> {
-                     LocalDate dob = LocalDate.parse(a[10], DateTimeFormatter.ofPattern("M/d/yyyy"));
-                     LocalTime tob = LocalTime.parse(a[11], DateTimeFormatter.ofPattern("hh:mm::ss a"));
-                     LocalDateTime dtob = LocalDateTime.of(dob,tob);
-                     ZonedDateTime zdtob = ZonedDateTime.of(dtob, ZoneId.of("+0"));
-                     Person person = new Person(a[2], a[4], zdtob);
-                     person.setSalary(new BigDecimal(a[25]));
-                     person.setEmail(a[6]);
-                     return person;
-                 })
-                 .forEach(repo::save); // p -> repo.save(p)
-         connection.commit();// adding this line to actually commit data to the DB
+     public void loadData() throws IOException {
+         try (PeopleImporter importer = new PeopleImporter(connection, new Hr5mPersonParser())) {
+             ImportProgress progress = importer
+                     .setCheckpoint("Hr5m")
+                     .setProgressListener(System.out::println)
+                     .importFrom(Path.of("/Users/tamaratsymbaliuk/Downloads/Hr5m.csv"));
+             assertThat(progress.rowsCommitted()).isGreaterThan(0);
+         }
      }
 
 
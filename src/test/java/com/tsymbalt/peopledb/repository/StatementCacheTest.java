@@ -0,0 +1,57 @@
+package com.tsymbalt.peopledb.repository;
+
+import com.tsymbalt.peopledb.model.CrudOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementCacheTest {
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:statementcache");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void reusesStatementForSameOperationAndSQL() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 2);
+        PreparedStatement first = cache.prepare(CrudOperation.COUNT, "SELECT 1");
+        PreparedStatement second = cache.prepare(CrudOperation.COUNT, "SELECT 1");
+        assertThat(second).isSameAs(first);
+        assertThat(cache.prepare(CrudOperation.FIND_ALL, "SELECT 1")).isNotSameAs(first);
+    }
+
+    @Test
+    public void closesLeastRecentlyUsedStatementOnEviction() throws SQLException {
+        StatementCache cache = new StatementCache(connection, 2);
+        PreparedStatement one = cache.prepare(CrudOperation.COUNT, "SELECT 1");
+        PreparedStatement two = cache.prepare(CrudOperation.COUNT, "SELECT 2");
+        cache.prepare(CrudOperation.COUNT, "SELECT 1");
+        cache.prepare(CrudOperation.COUNT, "SELECT 3");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(two.isClosed()).isTrue();
+        assertThat(one.isClosed()).isFalse();
+    }
+
+    @Test
+    public void closesAllStatementsOnClose() throws SQLException {
+        StatementCache cache = new StatementCache(connection);
+        PreparedStatement ps = cache.prepare(CrudOperation.COUNT, "SELECT 1");
+        cache.close();
+        assertThat(ps.isClosed()).isTrue();
+        assertThat(cache.size()).isZero();
+    }
+}
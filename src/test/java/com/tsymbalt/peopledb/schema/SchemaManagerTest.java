@@ -0,0 +1,42 @@
+package com.tsymbalt.peopledb.schema;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaManagerTest {
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:schema-" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (connection != null) connection.close();
+    }
+
+    @Test
+    public void canMigrateOnlyOnce() throws SQLException {
+        SchemaManager schema = new SchemaManager(connection);
+
+        assertThat(schema.migrate()).isEqualTo(SchemaManager.latestVersion());
+        assertThat(schema.migrate()).isZero();
+        assertThat(schema.currentVersion()).isEqualTo(SchemaManager.latestVersion());
+
+        try (ResultSet rs = connection.createStatement().executeQuery(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'IDX_PEOPLE_HOME_ADDRESS'")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+        }
+    }
+}